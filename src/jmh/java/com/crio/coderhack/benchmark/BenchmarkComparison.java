@@ -0,0 +1,64 @@
+package com.crio.coderhack.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Prints each benchmark of a JMH JSON result file next to the same benchmark in a baseline file.
+// A change is flagged only when the score moved by more than the two error margins combined,
+// so run-to-run noise is not reported as a regression.
+//
+// Usage: ./gradlew jmhCompare -PbaselineName=baseline
+public class BenchmarkComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: BenchmarkComparison <baseline.json> <results.json>");
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue().get("primaryMetric");
+            JsonNode before = baseline.containsKey(entry.getKey()) ? baseline.get(entry.getKey()).get("primaryMetric") : null;
+            String unit = now.get("scoreUnit").asText();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14s %9s%n", entry.getKey(), "-", format(now, unit), "new");
+                continue;
+            }
+            double change = (now.get("score").asDouble() - before.get("score").asDouble()) / before.get("score").asDouble() * 100;
+            boolean significant = Math.abs(now.get("score").asDouble() - before.get("score").asDouble())
+                    > error(now) + error(before);
+            System.out.printf("%-70s %14s %14s %+8.1f%%%s%n", entry.getKey(), format(before, unit), format(now, unit),
+                    change, significant ? "" : " (within error)");
+        }
+    }
+
+    // Benchmark name plus parameters, e.g. "SerializationBenchmark.serializeLeaderboard users=1000".
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText().replace("com.crio.coderhack.benchmark.", ""));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param -> key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.get("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static String format(JsonNode metric, String unit) {
+        return String.format("%.2f %s", metric.get("score").asDouble(), unit);
+    }
+}
@@ -0,0 +1,64 @@
+package com.crio.coderhack.benchmark;
+
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+import com.crio.coderhack.service.LeaderboardIndex;
+import com.crio.coderhack.service.ScoreEventLog;
+import com.crio.coderhack.service.ScoreWriteBuffer;
+import com.crio.coderhack.service.UserCache;
+import com.crio.coderhack.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Builds the application objects the way Spring wires them, minus the database.
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @param count Number of users.
+     * @return Users "user0".."user{count-1}" with reproducible random scores and the badges those scores earn.
+     */
+    static List<User> users(int count) {
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int score = random.nextInt(101);
+            users.add(new User("user" + i, "username" + i, score, UserService.badgesForScore(score)));
+        }
+        return users;
+    }
+
+    /**
+     * @param users The users to register before the benchmark starts.
+     * @return A UserService over the in-memory repository, with a loaded leaderboard index and
+     * the production cache settings, and write-behind and the score history disabled. Change events go nowhere,
+     * as when nobody is subscribed.
+     */
+    static UserService userService(List<User> users) {
+        UserRepository repository = InMemoryUserRepository.create(users);
+        LeaderboardIndex leaderboardIndex = new LeaderboardIndex(repository);
+        leaderboardIndex.reload(users);
+        UserCache userCache = new UserCache(100_000, Duration.ofMinutes(5), Duration.ofSeconds(2), new SimpleMeterRegistry());
+        ScoreWriteBuffer scoreWriteBuffer = new ScoreWriteBuffer(false, 1000, "memory", null, false, repository, null, new SimpleMeterRegistry());
+        ScoreEventLog scoreEventLog = new ScoreEventLog(false, 1000, 1, new StaticListableBeanFactory().getBeanProvider(MongoTemplate.class),
+                null, new SimpleMeterRegistry());
+        return new UserService(repository, leaderboardIndex, userCache, event -> { }, scoreWriteBuffer, scoreEventLog);
+    }
+
+    /**
+     * @return An ObjectMapper configured like the one Spring Boot injects into the controllers.
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+}
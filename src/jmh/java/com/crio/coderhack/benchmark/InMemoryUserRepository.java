@@ -0,0 +1,98 @@
+package com.crio.coderhack.benchmark;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Map-backed stand-in for UserRepository so benchmarks measure the service code without MongoDB.
+// Only the calls made on the benchmarked paths are implemented; anything else fails loudly,
+// so a benchmark never silently measures an unimplemented no-op.
+final class InMemoryUserRepository implements InvocationHandler {
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    private InMemoryUserRepository() {
+    }
+
+    /**
+     * @param seed Users to store up front.
+     * @return A UserRepository backed by a ConcurrentHashMap.
+     */
+    static UserRepository create(Iterable<User> seed) {
+        InMemoryUserRepository handler = new InMemoryUserRepository();
+        for (User user : seed) {
+            handler.users.put(user.getUserId(), copyOf(user));
+        }
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "updateScoreAndAddBadges":
+                return updateScoreAndAddBadges((String) args[0], (Integer) args[1], castBadges(args[2]));
+            case "findById":
+                return Optional.ofNullable(users.get((String) args[0])).map(InMemoryUserRepository::copyOf);
+            case "existsById":
+                return users.containsKey((String) args[0]);
+            case "insert":
+            case "save":
+                User user = (User) args[0];
+                users.put(user.getUserId(), copyOf(user));
+                return user;
+            case "deleteById":
+                users.remove((String) args[0]);
+                return null;
+            case "count":
+                return (long) users.size();
+            case "findAll":
+                if (args == null || args.length == 0) {
+                    return new ArrayList<>(users.values());
+                }
+                break;
+            case "toString":
+                return "InMemoryUserRepository(" + users.size() + " users)";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException("Not implemented by the benchmark repository: " + method);
+    }
+
+    // Same semantics as the findAndModify in UserRepositoryImpl: $set score, $bit or the badge mask, $inc version,
+    // return the new document. LeaderboardIndex.upsert ignores a copy whose version is not newer.
+    private Optional<User> updateScoreAndAddBadges(String userId, int score, Set<Badge> badges) {
+        User updated = users.computeIfPresent(userId, (id, current) -> {
+            User next = copyOf(current);
+            next.setScore(score);
+            next.addBadges(badges);
+            next.setVersion(current.getVersion() + 1);
+            return next;
+        });
+        return Optional.ofNullable(updated).map(InMemoryUserRepository::copyOf);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Badge> castBadges(Object badges) {
+        return (Set<Badge>) badges;
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.getUserId(), user.getUsername(), user.getScore(), user.getBadges());
+        copy.setVersion(user.getVersion());
+        return copy;
+    }
+}
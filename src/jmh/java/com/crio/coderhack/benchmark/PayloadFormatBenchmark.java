@@ -0,0 +1,81 @@
+package com.crio.coderhack.benchmark;
+
+import com.crio.coderhack.dto.LeaderboardColumns;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.LeaderboardSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Encode cost of each format GET /users can be served in, the way LeaderboardSnapshot encodes it,
+// with and without the gzip pass. The setup prints the payload size of every format, raw and gzipped,
+// since that is what the formats are for and JMH only reports time:
+//     ./gradlew jmh -PjmhArgs="PayloadFormatBenchmark"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PayloadFormatBenchmark {
+
+    @Param({"1000", "100000"})
+    private int users;
+
+    @Param({"JSON", "SMILE", "CBOR", "COLUMNS"})
+    private LeaderboardSnapshot.Format format;
+
+    private ObjectWriter writer;
+    private Object payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<User> leaderboard = BenchmarkFixtures.users(users);
+        ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        writer = switch (format) {
+            case JSON, COLUMNS -> objectMapper.writer();
+            case SMILE -> objectMapper.copyWith(new SmileFactory()).writer();
+            case CBOR -> objectMapper.copyWith(new CBORFactory()).writer();
+        };
+        payload = format == LeaderboardSnapshot.Format.COLUMNS ? LeaderboardColumns.of(leaderboard) : leaderboard;
+        byte[] bytes = writer.writeValueAsBytes(payload);
+        System.out.printf("%n%s, %d users: %d bytes, %d bytes gzipped%n", format, users, bytes.length, gzip(bytes).length);
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), payload);
+    }
+
+    @Benchmark
+    public byte[] encodeAndGzip() throws IOException {
+        return gzip(writer.writeValueAsBytes(payload));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
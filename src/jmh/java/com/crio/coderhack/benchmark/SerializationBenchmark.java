@@ -0,0 +1,68 @@
+package com.crio.coderhack.benchmark;
+
+import com.crio.coderhack.entity.User;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Jackson cost of the response bodies: one User (GET/PUT /users/{userId}) and the full
+// List<User> leaderboard (GET /users) at increasing sizes. Output goes to a null stream,
+// as the response body would, so buffer growth is not part of the measurement.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SingleUser {
+        private ObjectWriter writer;
+        private User user;
+
+        @Setup
+        public void setUp() {
+            writer = BenchmarkFixtures.objectMapper().writer();
+            user = BenchmarkFixtures.users(1).get(0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Leaderboard {
+        @Param({"1000", "100000", "1000000"})
+        private int users;
+
+        private ObjectWriter writer;
+        private List<User> leaderboard;
+
+        @Setup
+        public void setUp() {
+            writer = BenchmarkFixtures.objectMapper().writer();
+            leaderboard = BenchmarkFixtures.users(users);
+        }
+    }
+
+    @Benchmark
+    public void serializeUser(SingleUser state) throws IOException {
+        state.writer.writeValue(OutputStream.nullOutputStream(), state.user);
+    }
+
+    @Benchmark
+    public void serializeLeaderboard(Leaderboard state) throws IOException {
+        state.writer.writeValue(OutputStream.nullOutputStream(), state.leaderboard);
+    }
+}
@@ -0,0 +1,70 @@
+package com.crio.coderhack.benchmark;
+
+import com.crio.coderhack.controller.UserController;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.LeaderboardSnapshot;
+import com.crio.coderhack.service.UserService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// PUT /users/{userId} below the servlet layer: the JSON body is read into the Map<String, Object>
+// that UserController.updateUserScore accepts, then the controller validates and converts it.
+// parseBody isolates the Jackson part so it can be compared with the whole path.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateScoreRequestBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private UserController controller;
+    private ObjectReader mapReader;
+    private byte[][] bodies;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        UserService userService = BenchmarkFixtures.userService(BenchmarkFixtures.users(USERS));
+        controller = new UserController(userService, objectMapper,
+                new LeaderboardSnapshot(userService, objectMapper, null, Duration.ZERO, false));
+        mapReader = objectMapper.readerFor(new TypeReference<Map<String, Object>>() { });
+        bodies = new byte[101][];
+        for (int score = 0; score <= 100; score++) {
+            bodies[score] = ("{\"score\":" + score + "}").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> parseBody() throws IOException {
+        return mapReader.readValue(bodies[ThreadLocalRandom.current().nextInt(bodies.length)]);
+    }
+
+    @Benchmark
+    public ResponseEntity<User> updateUserScore() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> updates = mapReader.readValue(bodies[random.nextInt(bodies.length)]);
+        return controller.updateUserScore("user" + random.nextInt(USERS), updates);
+    }
+}
@@ -0,0 +1,53 @@
+package com.crio.coderhack.benchmark;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Score update path of UserService (validation, badge rules, repository call, index, cache and
+// event publishing) against the in-memory repository, plus the badge rules on their own.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    // Leaderboard size; index updates are O(log n).
+    @Param({"10000"})
+    private int users;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        userService = BenchmarkFixtures.userService(BenchmarkFixtures.users(users));
+    }
+
+    @Benchmark
+    public User updateScore() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userService.updateScore("user" + random.nextInt(users), random.nextInt(101));
+    }
+
+    @Benchmark
+    public Set<Badge> badgesForScore() {
+        return UserService.badgesForScore(ThreadLocalRandom.current().nextInt(101));
+    }
+}
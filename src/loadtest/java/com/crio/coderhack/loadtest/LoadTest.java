@@ -0,0 +1,171 @@
+package com.crio.coderhack.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Closed-loop HTTP load driver for a running Coderhack instance.
+// Each worker repeatedly sends a GET /users/{userId} or PUT /users/{userId} for a random seeded user
+// and records the latency, so the same run can be compared across execution modes
+// (e.g. the default platform-thread Tomcat pool vs. the "virtual" profile).
+//
+// Usage: ./gradlew loadTest -PloadTestArgs="--baseUrl=http://localhost:8081 --users=10000 --concurrency=400 --seconds=30"
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        String baseUrl = options.getOrDefault("baseUrl", "http://localhost:8081") + "/coderhack/api/v1/users";
+        int users = Integer.parseInt(options.getOrDefault("users", "10000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        // Share of requests that are score updates; the rest are profile reads.
+        double writeRatio = Double.parseDouble(options.getOrDefault("writeRatio", "0.2"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .build();
+
+        seed(client, baseUrl, users);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<Samples>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(workers.submit(() -> runWorker(client, baseUrl, users, writeRatio, deadline)));
+        }
+        LatencySamples reads = new LatencySamples();
+        LatencySamples writes = new LatencySamples();
+        int errors = 0;
+        for (Future<Samples> future : futures) {
+            Samples samples = future.get();
+            reads.addAll(samples.reads);
+            writes.addAll(samples.writes);
+            errors += samples.errors;
+        }
+        workers.shutdown();
+
+        System.out.printf("concurrency=%d duration=%ds errors=%d%n", concurrency, seconds, errors);
+        report("GET /users/{userId}", reads, seconds);
+        report("PUT /users/{userId}", writes, seconds);
+        System.exit(0);
+    }
+
+    // Registers load-test users in one batch request; existing IDs are reported as 409 and ignored.
+    private static void seed(HttpClient client, String baseUrl, int users) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < users; i++) {
+            body.append("{\"userId\":\"lt-").append(i).append("\",\"username\":\"loadtest").append(i).append("\"}\n");
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with HTTP " + response.statusCode());
+        }
+    }
+
+    private static Samples runWorker(HttpClient client, String baseUrl, int users, double writeRatio, long deadline) {
+        Samples samples = new Samples();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            URI uri = URI.create(baseUrl + "/lt-" + random.nextInt(users));
+            boolean write = random.nextDouble() < writeRatio;
+            HttpRequest request = write
+                    ? HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"score\":" + random.nextInt(101) + "}")).build()
+                    : HttpRequest.newBuilder(uri).GET().build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                long elapsed = System.nanoTime() - start;
+                if (response.statusCode() != 200) {
+                    samples.errors++;
+                } else if (write) {
+                    samples.writes.add(elapsed);
+                } else {
+                    samples.reads.add(elapsed);
+                }
+            } catch (Exception e) {
+                samples.errors++;
+            }
+        }
+        return samples;
+    }
+
+    private static void report(String endpoint, LatencySamples samples, int seconds) {
+        long[] latencies = samples.toSortedArray();
+        if (latencies.length == 0) {
+            System.out.printf("%-22s no successful requests%n", endpoint);
+            return;
+        }
+        System.out.printf("%-22s count=%d rps=%.0f p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+                endpoint, latencies.length, latencies.length / (double) seconds,
+                millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)),
+                millis(percentile(latencies, 0.999)), millis(latencies[latencies.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    // Per-worker results; merged once the run is over.
+    private static final class Samples {
+        private final LatencySamples reads = new LatencySamples();
+        private final LatencySamples writes = new LatencySamples();
+        private int errors;
+    }
+
+    // Growable array of latencies in nanoseconds, so recording a sample does not box.
+    private static final class LatencySamples {
+        private long[] values = new long[1024];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void addAll(LatencySamples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        private long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
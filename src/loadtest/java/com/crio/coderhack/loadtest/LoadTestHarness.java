@@ -0,0 +1,375 @@
+package com.crio.coderhack.loadtest;
+
+import com.crio.coderhack.CoderhackApplication;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// End-to-end load test through the real UserController -> UserService -> UserRepository path.
+// Unless --baseUrl is given, it starts MongoDB (an embedded mongod, or --mongoUri) and the
+// application in this JVM on a random port, seeds --users users, warms up, and then drives a
+// weighted mix of register/get/update/delete/leaderboard requests from --concurrency closed-loop
+// workers. Latency is recorded per endpoint in HdrHistograms and reported as p50/p99/p999/max
+// and requests per second. With --maxP99Ms or --maxErrorRate the run exits with status 1 when
+// an endpoint exceeds the budget, so it can gate changes in CI.
+//
+// Usage: ./gradlew loadTestHarness -PharnessArgs="--users=100000 --concurrency=64 --seconds=60 --maxP99Ms=50"
+//
+// Options (defaults in brackets):
+//   --baseUrl       test an already running instance instead of starting one
+//   --mongoUri      use this MongoDB instead of an embedded mongod
+//   --profiles      Spring profiles for the started application, e.g. reactive or virtual []
+//   --users         seeded users [10000]
+//   --concurrency   closed-loop workers [64]
+//   --warmupSeconds traffic before measuring, not recorded [10]
+//   --seconds       measured duration [30]
+//   --mix           operation weights [register:5,get:50,update:30,delete:5,leaderboard:10]
+//   --pageSize      leaderboard page size [100]
+//   --report        write the results as JSON to this file
+//   --maxP99Ms      fail if any endpoint's p99 is above this
+//   --maxErrorRate  fail if any endpoint's error rate is above this fraction
+public class LoadTestHarness {
+
+    private static final String USERS_PATH = "/coderhack/api/v1/users";
+    // Latencies are recorded in microseconds, up to one minute, with 3 significant digits.
+    private static final long MAX_LATENCY_MICROS = 60_000_000L;
+
+    private enum Operation {
+        REGISTER("POST /users"),
+        GET("GET /users/{userId}"),
+        UPDATE("PUT /users/{userId}"),
+        DELETE("DELETE /users/{userId}"),
+        LEADERBOARD("GET /users?limit=&page=");
+
+        private final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        String baseUrl = options.get("baseUrl");
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = null;
+        ConfigurableApplicationContext application = null;
+        int exitCode;
+        try {
+            if (baseUrl == null) {
+                String mongoUri = options.get("mongoUri");
+                if (mongoUri == null) {
+                    mongod = Mongod.instance().start(Version.Main.V7_0);
+                    ServerAddress address = mongod.current().getServerAddress();
+                    mongoUri = "mongodb://" + address.getHost() + ":" + address.getPort() + "/coderhackLoadTest";
+                }
+                SpringApplicationBuilder builder = new SpringApplicationBuilder(CoderhackApplication.class);
+                String profiles = options.get("profiles");
+                if (profiles != null) {
+                    // Spring rejects blank profile names, so "--profiles=" or "a,,b" must not reach it as such.
+                    builder.profiles(Arrays.stream(profiles.split(","))
+                            .map(String::trim)
+                            .filter(profile -> !profile.isEmpty())
+                            .toArray(String[]::new));
+                }
+                application = builder.run("--server.port=0", "--spring.data.mongodb.uri=" + mongoUri);
+                baseUrl = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+            }
+            exitCode = run(baseUrl + USERS_PATH, options);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            if (mongod != null) {
+                mongod.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(String usersUrl, Map<String, String> options) throws Exception {
+        int users = Integer.parseInt(options.getOrDefault("users", "10000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmupSeconds", "10"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int pageSize = Integer.parseInt(options.getOrDefault("pageSize", "100"));
+        Mix mix = Mix.parse(options.getOrDefault("mix", "register:5,get:50,update:30,delete:5,leaderboard:10"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .build();
+        seed(client, usersUrl, users);
+
+        Traffic traffic = new Traffic(client, usersUrl, users, pageSize, mix);
+        drive(traffic, concurrency, warmupSeconds);
+        Map<Operation, Result> results = drive(traffic, concurrency, seconds);
+
+        System.out.printf("users=%d concurrency=%d duration=%ds mix=%s%n", users, concurrency, seconds, options.getOrDefault("mix", "default"));
+        for (Map.Entry<Operation, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            Histogram latency = result.latency;
+            System.out.printf("%-26s count=%-8d errors=%-6d rps=%-8.0f p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+                    entry.getKey().endpoint, latency.getTotalCount(), result.errors, latency.getTotalCount() / (double) seconds,
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+        }
+        if (options.containsKey("report")) {
+            writeReport(Path.of(options.get("report")), results, seconds);
+        }
+        return checkBudgets(results, options);
+    }
+
+    // Registers the users every request draws from in one NDJSON batch; IDs left over from an earlier run answer 409 and are reused.
+    private static void seed(HttpClient client, String usersUrl, int users) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < users; i++) {
+            body.append("{\"userId\":\"lt-").append(i).append("\",\"username\":\"loadtest").append(i).append("\"}\n");
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(usersUrl + "/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with HTTP " + response.statusCode());
+        }
+    }
+
+    private static Map<Operation, Result> drive(Traffic traffic, int concurrency, int seconds) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<Map<Operation, Result>>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(workers.submit(() -> traffic.runWorker(deadline)));
+        }
+        Map<Operation, Result> merged = Result.perOperation();
+        for (Future<Map<Operation, Result>> future : futures) {
+            future.get().forEach((operation, result) -> merged.get(operation).add(result));
+        }
+        workers.shutdown();
+        return merged;
+    }
+
+    private static void writeReport(Path file, Map<Operation, Result> results, int seconds) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("[");
+            int remaining = results.size();
+            for (Map.Entry<Operation, Result> entry : results.entrySet()) {
+                Histogram latency = entry.getValue().latency;
+                out.printf("  {\"endpoint\": \"%s\", \"count\": %d, \"errors\": %d, \"rps\": %.1f, "
+                                + "\"p50Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f, \"maxMs\": %.3f}%s%n",
+                        entry.getKey().endpoint, latency.getTotalCount(), entry.getValue().errors,
+                        latency.getTotalCount() / (double) seconds,
+                        millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                        millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()),
+                        --remaining > 0 ? "," : "");
+            }
+            out.println("]");
+        }
+    }
+
+    // Returns 1 and names the offending endpoints when a latency or error budget is exceeded.
+    private static int checkBudgets(Map<Operation, Result> results, Map<String, String> options) {
+        int exitCode = 0;
+        for (Map.Entry<Operation, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            long total = result.latency.getTotalCount() + result.errors;
+            if (total == 0) {
+                continue;
+            }
+            if (options.containsKey("maxP99Ms")) {
+                double p99 = millis(result.latency.getValueAtPercentile(99));
+                if (p99 > Double.parseDouble(options.get("maxP99Ms"))) {
+                    System.out.printf("FAIL %s p99 %.2fms exceeds %sms%n", entry.getKey().endpoint, p99, options.get("maxP99Ms"));
+                    exitCode = 1;
+                }
+            }
+            if (options.containsKey("maxErrorRate")) {
+                double errorRate = result.errors / (double) total;
+                if (errorRate > Double.parseDouble(options.get("maxErrorRate"))) {
+                    System.out.printf("FAIL %s error rate %.4f exceeds %s%n", entry.getKey().endpoint, errorRate, options.get("maxErrorRate"));
+                    exitCode = 1;
+                }
+            }
+        }
+        return exitCode;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1_000.0;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    // The request generator shared by all workers.
+    private static final class Traffic {
+        private final HttpClient client;
+        private final String usersUrl;
+        private final int users;
+        private final int pageSize;
+        private final Mix mix;
+        // Users registered during the run; deletes take from here so the seeded users stay readable.
+        private final Queue<String> registered = new ConcurrentLinkedQueue<>();
+        private final AtomicLong registrations = new AtomicLong();
+        private final long runId = System.currentTimeMillis();
+
+        private Traffic(HttpClient client, String usersUrl, int users, int pageSize, Mix mix) {
+            this.client = client;
+            this.usersUrl = usersUrl;
+            this.users = users;
+            this.pageSize = pageSize;
+            this.mix = mix;
+        }
+
+        private Map<Operation, Result> runWorker(long deadline) {
+            Map<Operation, Result> results = Result.perOperation();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                Operation operation = mix.next(random);
+                String deletedId = operation == Operation.DELETE ? registered.poll() : null;
+                if (operation == Operation.DELETE && deletedId == null) {
+                    // Nothing to delete yet; register instead so the mix keeps its write share.
+                    operation = Operation.REGISTER;
+                }
+                String registeredId = operation == Operation.REGISTER ? "lt-" + runId + "-" + registrations.incrementAndGet() : null;
+                HttpRequest request = request(operation, random, registeredId, deletedId);
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    long micros = (System.nanoTime() - start) / 1_000;
+                    if (response.statusCode() == expectedStatus(operation)) {
+                        results.get(operation).latency.recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+                        if (registeredId != null) {
+                            registered.add(registeredId);
+                        }
+                    } else {
+                        results.get(operation).errors++;
+                    }
+                } catch (Exception e) {
+                    results.get(operation).errors++;
+                }
+            }
+            return results;
+        }
+
+        private HttpRequest request(Operation operation, ThreadLocalRandom random, String registeredId, String deletedId) {
+            URI seededUser = URI.create(usersUrl + "/lt-" + random.nextInt(users));
+            switch (operation) {
+                case REGISTER:
+                    return HttpRequest.newBuilder(URI.create(usersUrl)).header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(
+                                    "{\"userId\":\"" + registeredId + "\",\"username\":\"" + registeredId + "\"}")).build();
+                case UPDATE:
+                    return HttpRequest.newBuilder(seededUser).header("Content-Type", "application/json")
+                            .PUT(HttpRequest.BodyPublishers.ofString("{\"score\":" + random.nextInt(101) + "}")).build();
+                case DELETE:
+                    return HttpRequest.newBuilder(URI.create(usersUrl + "/" + deletedId)).DELETE().build();
+                case LEADERBOARD:
+                    int pages = Math.max(1, users / pageSize);
+                    return HttpRequest.newBuilder(URI.create(usersUrl + "?limit=" + pageSize + "&page=" + random.nextInt(pages))).GET().build();
+                default:
+                    return HttpRequest.newBuilder(seededUser).GET().build();
+            }
+        }
+
+        private static int expectedStatus(Operation operation) {
+            return operation == Operation.DELETE ? 204 : 200;
+        }
+    }
+
+    // Weighted choice between operations, e.g. "register:5,get:50,update:30,delete:5,leaderboard:10".
+    private static final class Mix {
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+
+        private Mix(Operation[] operations, int[] cumulativeWeights) {
+            this.operations = operations;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        private static Mix parse(String spec) {
+            String[] parts = spec.split(",");
+            Operation[] operations = new Operation[parts.length];
+            int[] cumulative = new int[parts.length];
+            int total = 0;
+            for (int i = 0; i < parts.length; i++) {
+                String[] pair = parts[i].trim().split(":");
+                operations[i] = Operation.valueOf(pair[0].toUpperCase());
+                total += Integer.parseInt(pair[1]);
+                cumulative[i] = total;
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("The mix needs at least one positive weight: " + spec);
+            }
+            return new Mix(operations, cumulative);
+        }
+
+        private Operation next(ThreadLocalRandom random) {
+            int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+    }
+
+    // Latency of the successful requests and the count of failed ones for one operation.
+    private static final class Result {
+        private final Histogram latency = new Histogram(MAX_LATENCY_MICROS, 3);
+        private long errors;
+
+        private static Map<Operation, Result> perOperation() {
+            Map<Operation, Result> results = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                results.put(operation, new Result());
+            }
+            return results;
+        }
+
+        private void add(Result other) {
+            latency.add(other.latency);
+            errors += other.errors;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.crio.coderhack.loadtest;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Shows how MongoDB answers the leaderboard queries issued by UserRepository, with and without
+// the score_userId index declared on User. For each query it prints the winning plan
+// (e.g. "LIMIT <- FETCH <- IXSCAN" vs. "SORT <- COLLSCAN"), the keys and documents examined,
+// and the median/min wall time over several runs. The "collscan" rows force a collection scan
+// with a {$natural: 1} hint, which is what every query did before the index existed.
+//
+// The users collection is only seeded when it is empty, so point --uri at a scratch database.
+//
+// Usage: ./gradlew queryPlanBenchmark -PbenchmarkArgs="--uri=mongodb://127.0.0.1:27017/coderhackBench --users=200000 --runs=20"
+public class QueryPlanBenchmark {
+
+    private static final Bson LEADERBOARD_SORT = Sorts.ascending("score", "_id");
+    private static final Bson NATURAL_ORDER = new Document("$natural", 1);
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseArgs(args);
+        ConnectionString uri = new ConnectionString(options.getOrDefault("uri", "mongodb://127.0.0.1:27017/coderhackBench"));
+        int users = Integer.parseInt(options.getOrDefault("users", "200000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "20"));
+        int limit = Integer.parseInt(options.getOrDefault("limit", "100"));
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoDatabase database = client.getDatabase(uri.getDatabase() == null ? "coderhackBench" : uri.getDatabase());
+            MongoCollection<Document> collection = database.getCollection("users");
+            seed(collection, users);
+            // Same definition as the @CompoundIndex on User; a no-op when the application already created it.
+            collection.createIndex(Indexes.ascending("score", "_id"), new IndexOptions().name("score_userId"));
+            long total = collection.estimatedDocumentCount();
+            System.out.printf("users=%d runs=%d limit=%d%n%n", total, runs, limit);
+
+            List<QueryShape> shapes = Arrays.asList(
+                    new QueryShape("findAllByOrderByScoreAsc", new Document(), null, 0),
+                    new QueryShape("findAllBy (page 0)", new Document(), null, limit + 1),
+                    new QueryShape("findAllBy (page 500)", new Document(), null, limit + 1).skip(500 * limit),
+                    new QueryShape("findAllAfter (score 50)", Filters.or(
+                            Filters.gt("score", 50),
+                            Filters.and(Filters.eq("score", 50), Filters.gt("_id", "qp-5"))), null, limit + 1),
+                    new QueryShape("streamRowsByOrderByScoreAscUserIdAsc (projection)", new Document(),
+                            Projections.include("username", "score", "badgeMask"), 0));
+            for (QueryShape shape : shapes) {
+                report(shape.name, "index", explainFind(collection, shape, null), timeFind(collection, shape, null, runs));
+                report(shape.name, "collscan", explainFind(collection, shape, NATURAL_ORDER), timeFind(collection, shape, NATURAL_ORDER, runs));
+            }
+            Bson higher = Filters.gt("score", 50);
+            report("countByScoreGreaterThan", "index", explainCount(database, higher, null), timeCount(collection, higher, null, runs));
+            report("countByScoreGreaterThan", "collscan", explainCount(database, higher, NATURAL_ORDER), timeCount(collection, higher, NATURAL_ORDER, runs));
+        }
+    }
+
+    // Inserts users with random scores when the collection is empty, in the shape Spring Data writes.
+    private static void seed(MongoCollection<Document> collection, int users) {
+        if (collection.estimatedDocumentCount() > 0) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Document> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < users; i++) {
+            batch.add(new Document("_id", "qp-" + i)
+                    .append("username", "bench" + i)
+                    .append("score", random.nextInt(101))
+                    .append("badgeMask", 0)
+                    .append("_class", "com.crio.coderhack.entity.User"));
+            if (batch.size() == 10_000 || i == users - 1) {
+                collection.insertMany(batch, new InsertManyOptions().ordered(false));
+                batch.clear();
+            }
+        }
+    }
+
+    private static FindIterable<Document> find(MongoCollection<Document> collection, QueryShape shape, Bson hint) {
+        FindIterable<Document> find = collection.find(shape.filter).sort(LEADERBOARD_SORT).skip(shape.skip).limit(shape.limit);
+        if (shape.projection != null) {
+            find.projection(shape.projection);
+        }
+        if (hint != null) {
+            find.hint(hint);
+        }
+        return find;
+    }
+
+    private static Document explainFind(MongoCollection<Document> collection, QueryShape shape, Bson hint) {
+        return find(collection, shape, hint).explain(ExplainVerbosity.EXECUTION_STATS);
+    }
+
+    private static Document explainCount(MongoDatabase database, Bson filter, Bson hint) {
+        Document count = new Document("count", "users").append("query", filter);
+        if (hint != null) {
+            count.append("hint", hint);
+        }
+        return database.runCommand(new Document("explain", count).append("verbosity", "executionStats"));
+    }
+
+    private static long[] timeFind(MongoCollection<Document> collection, QueryShape shape, Bson hint, int runs) {
+        long[] timings = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            try (MongoCursor<Document> cursor = find(collection, shape, hint).iterator()) {
+                while (cursor.hasNext()) {
+                    cursor.next();
+                }
+            }
+            timings[i] = System.nanoTime() - start;
+        }
+        return timings;
+    }
+
+    private static long[] timeCount(MongoCollection<Document> collection, Bson filter, Bson hint, int runs) {
+        long[] timings = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            collection.countDocuments(filter, hint == null ? new CountOptions() : new CountOptions().hint(hint));
+            timings[i] = System.nanoTime() - start;
+        }
+        return timings;
+    }
+
+    private static void report(String query, String mode, Document explain, long[] timings) {
+        Document stats = explain.get("executionStats", Document.class);
+        Arrays.sort(timings);
+        System.out.printf("%-26s %-8s plan=%-40s keys=%-8d docs=%-8d median=%.2fms min=%.2fms%n",
+                query, mode, describePlan(explain),
+                number(stats, "totalKeysExamined"), number(stats, "totalDocsExamined"),
+                timings[timings.length / 2] / 1_000_000.0, timings[0] / 1_000_000.0);
+    }
+
+    // Flattens the winning plan into "OUTER <- ... <- INNER" stage names.
+    private static String describePlan(Document explain) {
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        // Servers using the slot-based engine nest the classic plan tree under "queryPlan".
+        if (winningPlan.containsKey("queryPlan")) {
+            winningPlan = winningPlan.get("queryPlan", Document.class);
+        }
+        StringBuilder plan = new StringBuilder();
+        Document stage = winningPlan;
+        while (stage != null) {
+            if (plan.length() > 0) {
+                plan.append(" <- ");
+            }
+            plan.append(stage.getString("stage"));
+            stage = stage.get("inputStage", Document.class);
+        }
+        return plan.toString();
+    }
+
+    private static long number(Document document, String key) {
+        Object value = document == null ? null : document.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : -1;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    // One repository query: its filter, optional projection, and the skip/limit Spring Data would send.
+    private static final class QueryShape {
+        private final String name;
+        private final Bson filter;
+        private final Bson projection;
+        private final int limit;
+        private int skip;
+
+        private QueryShape(String name, Bson filter, Bson projection, int limit) {
+            this.name = name;
+            this.filter = filter;
+            this.projection = projection;
+            this.limit = limit;
+        }
+
+        private QueryShape skip(int skip) {
+            this.skip = skip;
+            return this;
+        }
+    }
+}
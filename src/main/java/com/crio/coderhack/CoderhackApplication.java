@@ -2,11 +2,12 @@ package com.crio.coderhack;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @SpringBootApplication
-@EnableMongoRepositories
+// @EnableScheduling runs the @Scheduled tasks, such as the live leaderboard push window.
+@EnableScheduling
 public class CoderhackApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,335 @@
+package com.crio.coderhack.admission;
+
+import com.crio.coderhack.dto.ScoreUpdate;
+import com.crio.coderhack.dto.ScoreUpdateResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Admission control for the MongoDB-backed UserRepository (coderhack.admission.enabled, on by default),
+// so one client hammering the API gets fast rejections instead of starving the MongoDB pool for everyone.
+//
+// Per user: UserService.updateScore is limited to user-writes-per-second with bursts of user-write-burst,
+// and calls over the limit fail with 429. Each item of UserService.updateScores takes a token from the
+// same bucket; items over the limit are kept out of the batch and get a 429 result in their place, while
+// the rest of the batch goes ahead. Each user's bucket is a single AtomicLong updated with CAS
+// (GCRA: the time at which the bucket is full again), kept in a Caffeine map that forgets idle users.
+//
+// Globally: repository reads and writes made while serving an HTTP request have separate budgets of
+// concurrent calls, so a write storm cannot take the permits reads need and the other way round. Only
+// calls that reach the database take a permit: anything the leaderboard index or the user cache answers
+// never gets here, and background work (write-behind flushes, index loads, the leaderboard snapshot)
+// is never shed. A call that finds its budget exhausted waits at most max-wait. It is rejected with 503
+// right away when max-queued calls are already waiting, or when the waiting calls ahead of it, at the
+// budget's recent average call time, would take longer than max-wait. Latency under overload is
+// therefore bounded by roughly max-wait plus one call.
+//
+// Rejections carry a Retry-After header: the time until the user's next token for 429, one second for 503.
+// Shed calls are counted in coderhack.admission.shed (by budget and reason); admitted calls in
+// coderhack.admission.admitted. Runs inside UserServiceMetrics, so shed calls also appear there as 429/503.
+// Streams are not limited: their cursor is read after the call has returned. The inmemory profile's
+// CompactUserRepository has no database behind it and is not limited either.
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class AdmissionControl {
+
+    // UserRepository methods by name prefix; anything else (streams, Object methods) is not limited.
+    private static final List<String> WRITES = List.of("insert", "save", "update", "bulkUpdate", "delete");
+    private static final List<String> READS = List.of("find", "count", "exists");
+    private static final long OVERLOADED_RETRY_AFTER_SECONDS = 1;
+
+    private final boolean enabled;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    // userId -> the time (System.nanoTime) at which the user's bucket is full again.
+    private final Cache<String, AtomicLong> userBuckets;
+    private final Counter userRateShed;
+    private final Budget reads;
+    private final Budget writes;
+
+    // Constructor injection for the limits and the metrics registry
+    @Autowired
+    public AdmissionControl(@Value("${coderhack.admission.enabled:true}") boolean enabled,
+                            @Value("${coderhack.admission.user-writes-per-second:10}") double userWritesPerSecond,
+                            @Value("${coderhack.admission.user-write-burst:20}") int userWriteBurst,
+                            @Value("${coderhack.admission.max-tracked-users:100000}") long maxTrackedUsers,
+                            @Value("${coderhack.admission.read-concurrency:50}") int readConcurrency,
+                            @Value("${coderhack.admission.write-concurrency:50}") int writeConcurrency,
+                            @Value("${coderhack.admission.max-queued:100}") int maxQueued,
+                            @Value("${coderhack.admission.max-wait:100ms}") Duration maxWait,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / userWritesPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (userWriteBurst - 1);
+        // A bucket idle for longer than this is full again, so forgetting it changes nothing.
+        this.userBuckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedUsers)
+                .expireAfterAccess(Duration.ofNanos(burstToleranceNanos + emissionIntervalNanos))
+                .build();
+        this.userRateShed = shedCounter(meterRegistry, "write", "user-rate");
+        this.reads = new Budget("read", readConcurrency, maxQueued, maxWait, meterRegistry);
+        this.writes = new Budget("write", writeConcurrency, maxQueued, maxWait, meterRegistry);
+    }
+
+    @Around("execution(public * com.crio.coderhack.service.UserService.updateScore(String, int)) && args(userId, ..)")
+    public Object limitUser(ProceedingJoinPoint joinPoint, String userId) throws Throwable {
+        if (enabled) {
+            long waitNanos = tryTakeToken(userId);
+            if (waitNanos > 0) {
+                userRateShed.increment();
+                throw new RetryLaterException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Too many score updates for user " + userId + ", retry later.",
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+        }
+        return joinPoint.proceed();
+    }
+
+    @Around("execution(public * com.crio.coderhack.service.UserService.updateScores(java.util.Iterator)) && args(updates)")
+    public Object limitUsers(ProceedingJoinPoint joinPoint, Iterator<ScoreUpdate> updates) throws Throwable {
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+        RateLimitedUpdates admitted = new RateLimitedUpdates(updates);
+        @SuppressWarnings("unchecked")
+        List<ScoreUpdateResult> results = (List<ScoreUpdateResult>) joinPoint.proceed(new Object[] {admitted});
+        return admitted.withRejected(results);
+    }
+
+    @Around("execution(public * com.crio.coderhack.repository.UserRepository+.*(..))"
+            + " && !within(com.crio.coderhack.repository.CompactUserRepository)")
+    public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        Budget budget = startsWithAny(operation, WRITES) ? writes : startsWithAny(operation, READS) ? reads : null;
+        if (!enabled || budget == null || RequestContextHolder.getRequestAttributes() == null) {
+            return joinPoint.proceed();
+        }
+        budget.acquire();
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            budget.release(System.nanoTime() - start);
+        }
+    }
+
+    // Generic cell rate algorithm: a write is allowed unless the bucket would stay non-full for longer
+    // than the burst allows; each allowed write pushes the "full again" time one interval further.
+    // Returns 0 if the write is allowed, otherwise how long until it would be.
+    private long tryTakeToken(String userId) {
+        long now = System.nanoTime();
+        AtomicLong fullAt = userBuckets.get(userId, id -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long base = current - now > 0 ? current : now;
+            if (base - now > burstToleranceNanos) {
+                return base - now - burstToleranceNanos;
+            }
+            if (fullAt.compareAndSet(current, base + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private static boolean startsWithAny(String operation, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (operation.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, String budget, String reason) {
+        return Counter.builder("coderhack.admission.shed")
+                .description("Calls rejected by admission control")
+                .tag("budget", budget)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    // Passes the items of a batch through, except those of users over their rate; those are held back
+    // and remembered by position so their 429 results can be put back in request order.
+    private final class RateLimitedUpdates implements Iterator<ScoreUpdate> {
+        private final Iterator<ScoreUpdate> source;
+        private final List<Integer> rejectedPositions = new ArrayList<>();
+        private final List<ScoreUpdateResult> rejected = new ArrayList<>();
+        private int position;
+        private ScoreUpdate next;
+        private boolean hasNext;
+
+        private RateLimitedUpdates(Iterator<ScoreUpdate> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!hasNext && source.hasNext()) {
+                ScoreUpdate update = source.next();
+                String userId = update == null ? null : update.getUserId();
+                // Items without a user are left to the batch's own validation.
+                if (userId != null && tryTakeToken(userId) > 0) {
+                    userRateShed.increment();
+                    rejectedPositions.add(position);
+                    rejected.add(new ScoreUpdateResult(userId, HttpStatus.TOO_MANY_REQUESTS.value(),
+                            "Too many score updates for user " + userId + ", retry later."));
+                } else {
+                    next = update;
+                    hasNext = true;
+                }
+                position++;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public ScoreUpdate next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = false;
+            return next;
+        }
+
+        // Merges the held-back items' results into the batch's results at their request positions.
+        private List<ScoreUpdateResult> withRejected(List<ScoreUpdateResult> results) {
+            if (rejected.isEmpty()) {
+                return results;
+            }
+            List<ScoreUpdateResult> merged = new ArrayList<>(results.size() + rejected.size());
+            Iterator<ScoreUpdateResult> admitted = results.iterator();
+            int nextRejected = 0;
+            for (int i = 0; i < results.size() + rejected.size(); i++) {
+                if (nextRejected < rejected.size() && rejectedPositions.get(nextRejected) == i) {
+                    merged.add(rejected.get(nextRejected++));
+                } else {
+                    merged.add(admitted.next());
+                }
+            }
+            return merged;
+        }
+    }
+
+    // Concurrent calls allowed for one kind of operation, with a bounded, time-limited wait for a permit.
+    private static final class Budget {
+        private final int concurrency;
+        private final int maxQueued;
+        private final long maxWaitNanos;
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        // Moving average of admitted call durations; updated without synchronization, an estimate is enough.
+        private volatile long averageNanos;
+        private final Counter admitted;
+        private final Counter queueFull;
+        private final Counter waitEstimate;
+        private final Counter waitTimeout;
+
+        private Budget(String name, int concurrency, int maxQueued, Duration maxWait, MeterRegistry meterRegistry) {
+            this.concurrency = concurrency;
+            this.maxQueued = maxQueued;
+            this.maxWaitNanos = maxWait.toNanos();
+            this.permits = new Semaphore(concurrency);
+            Gauge.builder("coderhack.admission.in_flight", permits, semaphore -> concurrency - semaphore.availablePermits())
+                    .description("UserRepository calls holding a permit")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            Gauge.builder("coderhack.admission.queued", queued, AtomicInteger::get)
+                    .description("UserRepository calls waiting for a permit")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            this.admitted = Counter.builder("coderhack.admission.admitted")
+                    .description("UserRepository calls admitted by admission control")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+            this.queueFull = shedCounter(meterRegistry, name, "queue-full");
+            this.waitEstimate = shedCounter(meterRegistry, name, "wait-estimate");
+            this.waitTimeout = shedCounter(meterRegistry, name, "wait-timeout");
+        }
+
+        private void acquire() {
+            if (!permits.tryAcquire()) {
+                int ahead = queued.getAndIncrement();
+                try {
+                    waitForPermit(ahead);
+                } finally {
+                    queued.decrementAndGet();
+                }
+            }
+            admitted.increment();
+        }
+
+        private void waitForPermit(int ahead) {
+            if (ahead >= maxQueued) {
+                throw overloaded(queueFull);
+            }
+            // Each finishing call frees one permit, so the calls ahead drain in about this much time.
+            if ((ahead + 1) * averageNanos / concurrency > maxWaitNanos) {
+                throw overloaded(waitEstimate);
+            }
+            try {
+                if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                    throw overloaded(waitTimeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw overloaded(waitTimeout);
+            }
+        }
+
+        private void release(long elapsedNanos) {
+            permits.release();
+            averageNanos += (elapsedNanos - averageNanos) / 8;
+        }
+
+        private static ResponseStatusException overloaded(Counter shed) {
+            shed.increment();
+            return new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE, "Server is overloaded, retry later.",
+                    OVERLOADED_RETRY_AFTER_SECONDS);
+        }
+    }
+
+    // A rejection that tells the client when to come back; the MVC exception resolver copies
+    // getHeaders() into the response.
+    static final class RetryLaterException extends ResponseStatusException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        private RetryLaterException(HttpStatus status, String reason, long retryAfterSeconds) {
+            super(status, reason);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.crio.coderhack.config;
+
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.LegacyBadgeMigration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAfterConvertCallback;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import reactor.core.publisher.Mono;
+
+// MongoDB client settings that are not exposed as standard spring.data.mongodb properties,
+// and the MongoDB-backed UserRepository. The "inmemory" profile replaces both with CompactUserRepository.
+@Configuration
+@Profile("!inmemory")
+@EnableMongoRepositories(basePackages = "com.crio.coderhack.repository")
+public class MongoConfig {
+
+    // Overrides the driver's connection pool size when coderhack.mongo.max-pool-size is set.
+    // A maxPoolSize given in the connection string still wins if this property is left unset.
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(
+            @Value("${coderhack.mongo.max-pool-size:0}") int maxPoolSize) {
+        return builder -> {
+            if (maxPoolSize > 0) {
+                builder.applyToConnectionPoolSettings(pool -> pool.maxSize(maxPoolSize));
+            }
+        };
+    }
+
+    // Applies the lazy badge migration to users read through ReactiveMongoTemplate as well ("reactive" profile).
+    @Bean
+    public ReactiveAfterConvertCallback<User> reactiveLegacyBadgeMigration(LegacyBadgeMigration migration) {
+        return (user, document, collection) -> Mono.just(migration.onAfterConvert(user, document, collection));
+    }
+}
@@ -0,0 +1,64 @@
+package com.crio.coderhack.config;
+
+import com.crio.coderhack.entity.ContestScore;
+import com.crio.coderhack.entity.ScoreEvent;
+import com.crio.coderhack.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Creates the indexes declared on the entities (@CompoundIndex, @Indexed) at startup, after creating
+// the score_events time series, which unlike the other collections cannot be created by the first insert.
+// This replaces spring.data.mongodb.auto-index-creation, which fails the whole context when
+// MongoDB is unreachable; here a failure is logged and the application still starts.
+@Component
+@Profile("!inmemory")
+public class MongoIndexInitializer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    private static final List<Class<?>> ENTITIES = List.of(User.class, ContestScore.class, ScoreEvent.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    // Constructor injection for MongoTemplate
+    @Autowired
+    public MongoIndexInitializer(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Ensures the score_events time series and every index declared on the entities exist. Creating an
+     * index that already exists with the same definition is a no-op, so this is safe on every startup.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            if (!mongoTemplate.collectionExists(ScoreEvent.class)) {
+                mongoTemplate.createCollection(ScoreEvent.class);
+            }
+        } catch (RuntimeException e) {
+            // Before MongoDB 5.0 there are no time series; the first insert creates a plain collection.
+            log.warn("Could not create the score_events time series collection", e);
+        }
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entity : ENTITIES) {
+            try {
+                IndexOperations indexOps = mongoTemplate.indexOps(entity);
+                resolver.resolveIndexFor(entity).forEach(indexOps::ensureIndex);
+            } catch (RuntimeException e) {
+                log.warn("Could not create indexes for the {} collection; leaderboard queries will sort in memory",
+                        mongoTemplate.getCollectionName(entity), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.crio.coderhack.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+// Web server setup for the "reactive" profile.
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig {
+
+    // Tomcat is also on the classpath for the servlet stack and would otherwise be picked first.
+    // Netty runs WebFlux on a small event-loop pool, which is the point of this profile.
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,100 @@
+package com.crio.coderhack.controller;
+
+import com.crio.coderhack.dto.ContestLeaderboardPage;
+import com.crio.coderhack.entity.ContestScore;
+import com.crio.coderhack.service.ContestService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+// Contest-scoped scores and leaderboards under the same /users base path as UserController.
+// Only on the servlet stack, and not in the "inmemory" profile, which has no contest storage.
+@RestController
+@Profile("!reactive & !inmemory")
+@RequestMapping("/coderhack/api/v1/users")
+public class ContestController {
+
+    private final ContestService contestService;
+
+    // Constructor injection for ContestService
+    @Autowired
+    public ContestController(ContestService contestService) {
+        this.contestService = contestService;
+    }
+
+    /**
+     * Endpoint to set a user's score in a contest.
+     * PUT /users/{userId}/contests/{contestId}
+     * Request Body: { "score": 10 }
+     *
+     * @param userId    The ID of the user.
+     * @param contestId The ID of the contest.
+     * @param updates   A map containing the update fields (only "score" is allowed).
+     * @return ResponseEntity with the user's contest entry and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the user is not found (HTTP 404 Not Found),
+     * or the body is not a single valid score (HTTP 400 Bad Request).
+     */
+    @PutMapping("/{userId}/contests/{contestId}")
+    public ResponseEntity<ContestScore> updateContestScore(@PathVariable String userId, @PathVariable String contestId,
+                                                           @RequestBody Map<String, Object> updates) {
+        if (updates.size() != 1 || !updates.containsKey("score")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only 'score' field is allowed for update.");
+        }
+        int newScore;
+        try {
+            newScore = Integer.parseInt(String.valueOf(updates.get("score")));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Score must be a valid number.");
+        }
+        return new ResponseEntity<>(contestService.updateScore(contestId, userId, newScore), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to retrieve a user's entry in a contest.
+     * GET /users/{userId}/contests/{contestId}
+     *
+     * @param userId    The ID of the user.
+     * @param contestId The ID of the contest.
+     * @return ResponseEntity with the contest entry and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the user has no score in the contest (HTTP 404 Not Found).
+     */
+    @GetMapping("/{userId}/contests/{contestId}")
+    public ResponseEntity<ContestScore> getContestScore(@PathVariable String userId, @PathVariable String contestId) {
+        return new ResponseEntity<>(contestService.getScore(contestId, userId), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to retrieve a contest's leaderboard, sorted by contest score.
+     * GET /users?contestId=weekly-42
+     *
+     * @param contestId The ID of the contest.
+     * @return ResponseEntity with the contest entries and HTTP status 200 (OK); empty for an unknown contest.
+     */
+    @GetMapping(params = "contestId")
+    public ResponseEntity<List<ContestScore>> getContestLeaderboard(@RequestParam String contestId) {
+        return new ResponseEntity<>(contestService.getLeaderboard(contestId), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to retrieve one page of a contest's leaderboard.
+     * GET /users?contestId=weekly-42&limit=50&page=2
+     *
+     * @param contestId The ID of the contest.
+     * @param limit     Page size (1-1000).
+     * @param page      Zero-based page number; defaults to 0.
+     * @return ResponseEntity with the page and HTTP status 200 (OK).
+     * @throws ResponseStatusException if page or limit are out of range (HTTP 400 Bad Request).
+     */
+    @GetMapping(params = {"contestId", "limit"})
+    public ResponseEntity<ContestLeaderboardPage> getContestLeaderboardPage(@RequestParam String contestId,
+                                                                            @RequestParam int limit,
+                                                                            @RequestParam(defaultValue = "0") int page) {
+        return new ResponseEntity<>(contestService.getLeaderboardPage(contestId, page, limit), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,52 @@
+package com.crio.coderhack.controller;
+
+import com.crio.coderhack.dto.BadgeCounts;
+import com.crio.coderhack.dto.ScorePercentile;
+import com.crio.coderhack.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+// Aggregate questions about the whole leaderboard, answered from the score histogram kept by
+// LeaderboardIndex instead of reading users. Under its own path so the names cannot shadow a userId.
+@RestController
+@Profile("!reactive")
+@RequestMapping("/coderhack/api/v1/leaderboard")
+public class LeaderboardStatsController {
+
+    private final UserService userService;
+
+    // Constructor injection for UserService
+    @Autowired
+    public LeaderboardStatsController(UserService userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * Endpoint to find where a score stands on the leaderboard.
+     * GET /leaderboard/percentile?score=75
+     *
+     * @param score A score between 0 and 100.
+     * @return ResponseEntity with the rank the score would have, the percentage of users scoring at most
+     * that much and the total user count, and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the score is out of range (HTTP 400 Bad Request).
+     */
+    @GetMapping("/percentile")
+    public ResponseEntity<ScorePercentile> getPercentile(@RequestParam int score) {
+        return new ResponseEntity<>(userService.getPercentile(score), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to count the users holding each badge.
+     * GET /leaderboard/badges
+     *
+     * @return ResponseEntity with the total user count and the count per badge, and HTTP status 200 (OK).
+     */
+    @GetMapping("/badges")
+    public ResponseEntity<BadgeCounts> getBadgeCounts() {
+        return new ResponseEntity<>(userService.getBadgeCounts(), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,71 @@
+package com.crio.coderhack.controller;
+
+import com.crio.coderhack.dto.LeaderboardDiff;
+import com.crio.coderhack.service.LeaderboardDiffPublisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+// Server-Sent Events endpoint for live leaderboard updates, sharing the /users path with UserController.
+// Requests that accept text/event-stream are routed here; all other GET /users requests are unaffected.
+@RestController
+@Profile("!reactive")
+@RequestMapping("/coderhack/api/v1/users")
+public class LeaderboardStreamController {
+
+    private final LeaderboardDiffPublisher diffPublisher;
+    private final long timeoutMillis;
+
+    // Constructor injection for the live leaderboard publisher and the connection timeout
+    @Autowired
+    public LeaderboardStreamController(LeaderboardDiffPublisher diffPublisher,
+                                       @Value("${coderhack.leaderboard.sse-timeout:30m}") Duration timeout) {
+        this.diffPublisher = diffPublisher;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Endpoint to subscribe to live leaderboard changes.
+     * GET /users with Accept: text/event-stream
+     * Each "diff" event carries every user that changed during one push window, with their new
+     * score, badges and rank. Clients load GET /users once and then apply the diffs; a gap in the
+     * event IDs means a diff was missed and the list should be re-fetched.
+     *
+     * @return An SseEmitter that stays open until the timeout, after which EventSource clients reconnect.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLeaderboard() {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Runnable unsubscribe = diffPublisher.subscribe(diff -> send(emitter, diff));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        try {
+            // Commits the response headers now instead of at the first diff, so clients see the stream open.
+            emitter.send(SseEmitter.event().comment("subscribed"));
+        } catch (IOException e) {
+            unsubscribe.run();
+            throw new UncheckedIOException(e);
+        }
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, LeaderboardDiff diff) {
+        try {
+            emitter.send(SseEmitter.event().id(String.valueOf(diff.getVersion())).name("diff").data(diff, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // The client went away; failing here makes the publisher drop this subscriber.
+            emitter.completeWithError(e);
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.crio.coderhack.controller;
+
+import com.crio.coderhack.dto.LeaderboardDiff;
+import com.crio.coderhack.dto.UserRank;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.LeaderboardDiffPublisher;
+import com.crio.coderhack.service.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// WebFlux mirror of UserController, active only with the "reactive" profile.
+// Endpoints, request bodies and error statuses (400/404/409) are the same as the servlet version.
+@RestController
+@Profile("reactive")
+@RequestMapping("/coderhack/api/v1/users")
+public class ReactiveUserController {
+
+    private final ReactiveUserService userService;
+    private final LeaderboardDiffPublisher diffPublisher;
+
+    // Constructor injection for ReactiveUserService and the live leaderboard publisher
+    @Autowired
+    public ReactiveUserController(ReactiveUserService userService, LeaderboardDiffPublisher diffPublisher) {
+        this.userService = userService;
+        this.diffPublisher = diffPublisher;
+    }
+
+    /**
+     * Endpoint to register a new user.
+     * POST /users
+     * Request Body: { "userId": "string", "username": "string" }
+     *
+     * @param body The User object containing userId and username.
+     * @return The created User with HTTP status 200 (OK), 400 if fields are missing or 409 if the ID exists.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<User>> createUser(@RequestBody Mono<User> body) {
+        return body.flatMap(user -> {
+            // Basic validation for request body fields
+            if (user.getUserId() == null || user.getUserId().isEmpty() ||
+                user.getUsername() == null || user.getUsername().isEmpty()) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "User ID and Username are required."));
+            }
+            return userService.registerUser(user.getUserId(), user.getUsername());
+        }).map(newUser -> new ResponseEntity<>(newUser, HttpStatus.OK));
+    }
+
+    /**
+     * Endpoint to retrieve a user by ID.
+     * GET /users/{userId}
+     *
+     * @param userId The ID of the user to retrieve.
+     * @return The User with HTTP status 200 (OK), or 404 if not found.
+     */
+    @GetMapping("/{userId}")
+    public Mono<ResponseEntity<User>> getUser(@PathVariable String userId) {
+        return userService.getUserById(userId)
+                .map(user -> new ResponseEntity<>(user, HttpStatus.OK))
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + userId + " not found.")));
+    }
+
+    /**
+     * Endpoint to retrieve the leaderboard rank of a user.
+     * GET /users/{userId}/rank
+     *
+     * @param userId The ID of the user.
+     * @return The user's score, rank and total user count with HTTP status 200 (OK), or 404 if not found.
+     */
+    @GetMapping("/{userId}/rank")
+    public Mono<ResponseEntity<UserRank>> getUserRank(@PathVariable String userId) {
+        return userService.getRank(userId).map(rank -> new ResponseEntity<>(rank, HttpStatus.OK));
+    }
+
+    /**
+     * Endpoint to update the score of a specific user.
+     * PUT /users/{userId}
+     * Request Body: { "score": 10 }
+     *
+     * @param userId The ID of the user to update.
+     * @param body   A map containing the update fields (only "score" is allowed).
+     * @return The updated User with HTTP status 200 (OK), 400 for invalid input or 404 if not found.
+     */
+    @PutMapping("/{userId}")
+    public Mono<ResponseEntity<User>> updateUserScore(@PathVariable String userId, @RequestBody Mono<Map<String, Object>> body) {
+        return body.flatMap(updates -> {
+            // Validation: Only 'score' field is allowed for update
+            if (updates.size() != 1 || !updates.containsKey("score")) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only 'score' field is allowed for update."));
+            }
+            int newScore;
+            try {
+                newScore = Integer.parseInt(String.valueOf(updates.get("score")));
+            } catch (NumberFormatException e) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Score must be a valid number."));
+            }
+            return userService.updateScore(userId, newScore);
+        }).map(updatedUser -> new ResponseEntity<>(updatedUser, HttpStatus.OK));
+    }
+
+    /**
+     * Endpoint to delete a specific user.
+     * DELETE /users/{userId}
+     *
+     * @param userId The ID of the user to delete.
+     * @return HTTP status 204 (No Content), or 404 if not found.
+     */
+    @DeleteMapping("/{userId}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable String userId) {
+        return userService.deleteUser(userId).thenReturn(new ResponseEntity<>(HttpStatus.NO_CONTENT));
+    }
+
+    /**
+     * Endpoint to retrieve all registered users, sorted by score.
+     * GET /users
+     * With Accept: application/x-ndjson each user is written as its own line as soon as it is emitted;
+     * otherwise the Flux is encoded incrementally as a JSON array, or as Smile with
+     * Accept: application/x-jackson-smile.
+     *
+     * @return A Flux of users with HTTP status 200 (OK).
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            UserController.APPLICATION_SMILE_VALUE})
+    public Flux<User> getAllUsers() {
+        return userService.getAllUsers();
+    }
+
+    /**
+     * Endpoint to subscribe to live leaderboard changes.
+     * GET /users with Accept: text/event-stream
+     * Each "diff" event carries every user that changed during one push window.
+     *
+     * @return A Flux of server-sent diff events.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<LeaderboardDiff>> streamLeaderboard() {
+        return Flux.<LeaderboardDiff>create(sink -> {
+            // A client that cannot keep up only gets the newest diff; the version gap tells it to re-fetch.
+            Runnable unsubscribe = diffPublisher.subscribe(sink::next);
+            sink.onDispose(unsubscribe::run);
+        }, FluxSink.OverflowStrategy.LATEST)
+                .map(diff -> ServerSentEvent.builder(diff).id(String.valueOf(diff.getVersion())).event("diff").build())
+                // Commits the response headers now instead of at the first diff, so clients see the stream open.
+                .startWith(ServerSentEvent.<LeaderboardDiff>builder().comment("subscribed").build());
+    }
+}
@@ -0,0 +1,78 @@
+package com.crio.coderhack.controller;
+
+import com.crio.coderhack.dto.ScoreStats;
+import com.crio.coderhack.entity.ScoreEvent;
+import com.crio.coderhack.service.ScoreEventLog;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.List;
+
+// Score history and the rolling aggregates kept by ScoreEventLog.
+// Only on the servlet stack, and not in the "inmemory" profile, which records no history.
+@RestController
+@Profile("!reactive & !inmemory")
+@RequestMapping("/coderhack/api/v1")
+public class StatsController {
+
+    private final ScoreEventLog scoreEventLog;
+
+    // Constructor injection for the score history
+    @Autowired
+    public StatsController(ScoreEventLog scoreEventLog) {
+        this.scoreEventLog = scoreEventLog;
+    }
+
+    /**
+     * Endpoint to retrieve score change aggregates.
+     * GET /stats?minutes=60
+     *
+     * @param minutes Length of the window, including the current minute (1-10080); defaults to 60.
+     * @return ResponseEntity with submissions, submitted score ranges and badge awards over the window,
+     * in total and per minute, and HTTP status 200 (OK).
+     * @throws ResponseStatusException if minutes is out of range (HTTP 400 Bad Request).
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ScoreStats> getStats(@RequestParam(defaultValue = "60") int minutes) {
+        if (minutes < 1 || minutes > ScoreEventLog.MAX_STATS_MINUTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Minutes must be between 1 and " + ScoreEventLog.MAX_STATS_MINUTES + ".");
+        }
+        return new ResponseEntity<>(scoreEventLog.stats(minutes), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to retrieve a user's score history, newest first.
+     * GET /users/{userId}/history?limit=100, then &before=<time>&beforeId=<id> of the last event for older events.
+     * Recently accepted changes appear once the history has been flushed (every second by default).
+     *
+     * @param userId   The ID of the user.
+     * @param limit    Maximum number of events (1-1000); defaults to 100.
+     * @param before   ISO-8601 instant; only events before it are returned.
+     * @param beforeId ID of the last event already seen, which breaks ties between events of the same time.
+     * @return ResponseEntity with the score events and HTTP status 200 (OK).
+     * @throws ResponseStatusException if limit is out of range, or beforeId is not an event ID or is
+     * given without before (HTTP 400 Bad Request).
+     */
+    @GetMapping("/users/{userId}/history")
+    public ResponseEntity<List<ScoreEvent>> getHistory(@PathVariable String userId,
+                                                       @RequestParam(defaultValue = "100") int limit,
+                                                       @RequestParam(required = false) Instant before,
+                                                       @RequestParam(required = false) String beforeId) {
+        if (limit < 1 || limit > ScoreEventLog.MAX_HISTORY_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + ScoreEventLog.MAX_HISTORY_LIMIT + ".");
+        }
+        if (beforeId != null && (before == null || !ObjectId.isValid(beforeId))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "beforeId must be the id of an event and needs before as well.");
+        }
+        return new ResponseEntity<>(scoreEventLog.history(userId, before, beforeId, limit), HttpStatus.OK);
+    }
+}
@@ -1,29 +1,64 @@
 package com.crio.coderhack.controller;
 
+import com.crio.coderhack.dto.LeaderboardPage;
+import com.crio.coderhack.dto.LeaderboardRow;
+import com.crio.coderhack.dto.RegistrationResult;
+import com.crio.coderhack.dto.ScoreUpdate;
+import com.crio.coderhack.dto.ScoreUpdateResult;
+import com.crio.coderhack.dto.UserRank;
 import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.LeaderboardSnapshot;
 import com.crio.coderhack.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 // @RestController combines @Controller and @ResponseBody, making it easy to build RESTful services.
 @RestController
+// The servlet controller is replaced by ReactiveUserController when the "reactive" profile is active.
+@Profile("!reactive")
 // @RequestMapping sets the base path for all endpoints in this controller.
 @RequestMapping("/coderhack/api/v1/users")
 public class UserController {
 
+    // Binary JSON variants understood by the Smile and CBOR message converters.
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    // GET /users as LeaderboardColumns: one array per field instead of one object per user.
+    public static final String APPLICATION_LEADERBOARD_COLUMNS_VALUE = "application/vnd.coderhack.leaderboard-columns+json";
+
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final LeaderboardSnapshot leaderboardSnapshot;
 
-    // Constructor injection for UserService
+    // Constructor injection for UserService, the application's Jackson ObjectMapper and the serialized leaderboard
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper, LeaderboardSnapshot leaderboardSnapshot) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.leaderboardSnapshot = leaderboardSnapshot;
     }
 
     /**
@@ -63,6 +98,19 @@ public class UserController {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + userId + " not found."));
     }
 
+    /**
+     * Endpoint to retrieve the leaderboard rank of a user.
+     * GET /users/{userId}/rank
+     *
+     * @param userId The ID of the user.
+     * @return ResponseEntity with the user's score, rank and total user count, and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the user is not found (HTTP 404 Not Found).
+     */
+    @GetMapping("/{userId}/rank")
+    public ResponseEntity<UserRank> getUserRank(@PathVariable String userId) {
+        return new ResponseEntity<>(userService.getRank(userId), HttpStatus.OK);
+    }
+
     /**
      * Endpoint to update the score of a specific user.
      * PUT /users/{userId}
@@ -95,6 +143,57 @@ public class UserController {
         return new ResponseEntity<>(updatedUser, HttpStatus.OK);
     }
 
+    /**
+     * Endpoint to update the scores of many users in one request.
+     * POST /users/scores/batch
+     * Request Body: a JSON array [ { "userId": "string", "score": 10 }, ... ]
+     * or NDJSON (application/x-ndjson) with one such object per line.
+     * The body is parsed incrementally and written in bulk chunks; each item is validated
+     * and badged exactly like PUT /users/{userId}.
+     *
+     * @param body The raw request body.
+     * @return ResponseEntity with one result per item, in request order, and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the body is not valid JSON (HTTP 400 Bad Request).
+     * Chunks before the malformed item have already been applied.
+     */
+    @PostMapping(value = "/scores/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<ScoreUpdateResult>> updateUserScores(InputStream body) throws IOException {
+        return new ResponseEntity<>(readBatch(body, ScoreUpdate.class, userService::updateScores), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to register many users in one request.
+     * POST /users/batch
+     * Request Body: a JSON array [ { "userId": "string", "username": "string" }, ... ]
+     * or NDJSON (application/x-ndjson) with one such object per line.
+     * The body is parsed incrementally and inserted in bulk chunks, so memory use does not
+     * grow with the size of the upload beyond one result per item.
+     *
+     * @param body The raw request body.
+     * @return ResponseEntity with one result per item (200, 400 or 409), in request order, and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the body is not valid JSON (HTTP 400 Bad Request).
+     * Chunks before the malformed item have already been inserted.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<RegistrationResult>> createUsers(InputStream body) throws IOException {
+        return new ResponseEntity<>(readBatch(body, User.class, userService::registerUsers), HttpStatus.OK);
+    }
+
+    // Parses a JSON array or NDJSON body one item at a time and hands the lazy iterator to the service.
+    private <T, R> R readBatch(InputStream body, Class<T> itemType, Function<Iterator<T>, R> handler) throws IOException {
+        try (MappingIterator<T> items = objectMapper.readerFor(itemType).readValues(body)) {
+            return handler.apply(items);
+        } catch (JsonProcessingException | RuntimeJsonMappingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed batch item: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse errors in a plain RuntimeException.
+            if (e.getCause() instanceof JsonProcessingException) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed batch item: " + e.getCause().getMessage());
+            }
+            throw e;
+        }
+    }
+
     /**
      * Endpoint to delete a specific user.
      * DELETE /users/{userId}
@@ -112,12 +211,161 @@ public class UserController {
     /**
      * Endpoint to retrieve a list of all registered users, sorted by score.
      * GET /users
+     * The body is a pre-serialized snapshot that is only rebuilt after writes. Its ETag changes with
+     * every rebuild, so a poll with a matching If-None-Match gets 304 Not Modified and no body.
+     * Clients that accept gzip get the pre-compressed bytes.
      *
-     * @return ResponseEntity with a list of User objects and HTTP status 200 (OK).
+     * @param request The current request, for conditional and Accept-Encoding handling.
+     * @return ResponseEntity with the JSON array of users and HTTP status 200 (OK), or 304 (Not Modified).
      */
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        return new ResponseEntity<>(users, HttpStatus.OK);
+    public ResponseEntity<byte[]> getAllUsers(WebRequest request) {
+        return snapshotResponse(request, LeaderboardSnapshot.Format.JSON, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Endpoint to retrieve the same list in Smile, Jackson's binary JSON encoding.
+     * GET /users with Accept: application/x-jackson-smile
+     *
+     * @param request The current request, for conditional and Accept-Encoding handling.
+     * @return ResponseEntity with the Smile-encoded array of users and HTTP status 200 (OK), or 304 (Not Modified).
+     */
+    @GetMapping(produces = APPLICATION_SMILE_VALUE)
+    public ResponseEntity<byte[]> getAllUsersAsSmile(WebRequest request) {
+        return snapshotResponse(request, LeaderboardSnapshot.Format.SMILE, MediaType.parseMediaType(APPLICATION_SMILE_VALUE));
+    }
+
+    /**
+     * Endpoint to retrieve the same list in CBOR.
+     * GET /users with Accept: application/cbor
+     *
+     * @param request The current request, for conditional and Accept-Encoding handling.
+     * @return ResponseEntity with the CBOR-encoded array of users and HTTP status 200 (OK), or 304 (Not Modified).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_CBOR_VALUE)
+    public ResponseEntity<byte[]> getAllUsersAsCbor(WebRequest request) {
+        return snapshotResponse(request, LeaderboardSnapshot.Format.CBOR, MediaType.APPLICATION_CBOR);
+    }
+
+    /**
+     * Endpoint to retrieve the same list as columns: { "userIds": [...], "usernames": [...],
+     * "scores": [...], "badgeMasks": [...] }.
+     * GET /users with Accept: application/vnd.coderhack.leaderboard-columns+json
+     *
+     * @param request The current request, for conditional and Accept-Encoding handling.
+     * @return ResponseEntity with the leaderboard columns and HTTP status 200 (OK), or 304 (Not Modified).
+     */
+    @GetMapping(produces = APPLICATION_LEADERBOARD_COLUMNS_VALUE)
+    public ResponseEntity<byte[]> getAllUsersAsColumns(WebRequest request) {
+        return snapshotResponse(request, LeaderboardSnapshot.Format.COLUMNS,
+                MediaType.parseMediaType(APPLICATION_LEADERBOARD_COLUMNS_VALUE));
+    }
+
+    // Serves one encoding of the current snapshot, honouring If-None-Match and Accept-Encoding.
+    // The gzipped and identity bodies are different representations, so they get different strong ETags.
+    private ResponseEntity<byte[]> snapshotResponse(WebRequest request, LeaderboardSnapshot.Format format,
+                                                    MediaType contentType) {
+        LeaderboardSnapshot.Snapshot snapshot = leaderboardSnapshot.get();
+        boolean gzipped = leaderboardSnapshot.isGzipEnabled() && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = snapshot.getEtag(format, gzipped);
+        if (request.checkNotModified(etag)) {
+            return null; // 304 with the ETag header already set
+        }
+        LeaderboardSnapshot.Body body = snapshot.body(format);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(contentType)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (gzipped) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getGzipped());
+        }
+        return response.body(body.getBytes());
+    }
+
+    // True if Accept-Encoding allows gzip: listed, or covered by "*", with a q-value above 0.
+    // "gzip;q=0" explicitly refuses it, and an explicit gzip entry wins over "*".
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        return (gzip >= 0 ? gzip : any) > 0;
+    }
+
+    /**
+     * Endpoint to retrieve one page of the leaderboard, sorted by score and then userId.
+     * GET /users?limit=50&page=2 for offset paging, or
+     * GET /users?limit=50&afterScore=40&afterUserId=u17 to resume after a cursor.
+     *
+     * @param limit       Page size (1-1000).
+     * @param page        Zero-based page number; defaults to 0 and cannot be combined with a cursor.
+     * @param afterScore  Score of the last entry already seen.
+     * @param afterUserId User ID of the last entry already seen.
+     * @return ResponseEntity with the page and the cursor for the next one, and HTTP status 200 (OK).
+     * @throws ResponseStatusException if the parameters are inconsistent or out of range (HTTP 400 Bad Request).
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<LeaderboardPage> getLeaderboardPage(@RequestParam int limit,
+                                                              @RequestParam(required = false) Integer page,
+                                                              @RequestParam(required = false) Integer afterScore,
+                                                              @RequestParam(required = false) String afterUserId) {
+        if (afterScore == null && afterUserId == null) {
+            return new ResponseEntity<>(userService.getLeaderboardPage(page == null ? 0 : page, limit), HttpStatus.OK);
+        }
+        if (afterScore == null || afterUserId == null || page != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A cursor needs both afterScore and afterUserId and cannot be combined with page.");
+        }
+        return new ResponseEntity<>(userService.getLeaderboardAfter(afterScore, afterUserId, limit), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to export every user, sorted by score, as one JSON array.
+     * GET /users?stream=true
+     * Each user is written to the response as it is read from the database cursor,
+     * so the full list is never built in memory.
+     *
+     * @return ResponseEntity with a streamed JSON array body and HTTP status 200 (OK).
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> exportAllUsers() {
+        // Let the generator's buffer decide when to write instead of flushing after every user.
+        // Written as LeaderboardRow, not as the runtime projection class, so the fields match a User's JSON.
+        ObjectWriter writer = objectMapper.writerFor(LeaderboardRow.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<LeaderboardRow> rows = userService.streamLeaderboardRows()) {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+                generator.writeStartArray();
+                Iterator<LeaderboardRow> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                }
+                generator.writeEndArray();
+                // Flush without closing: the servlet container owns the response stream.
+                generator.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
-}
\ No newline at end of file
+}
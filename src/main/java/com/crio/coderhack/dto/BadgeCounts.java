@@ -0,0 +1,19 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.Badge;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// Response body for the number of users holding each badge.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BadgeCounts {
+
+    private long totalUsers;
+    // Every badge, including the ones nobody holds yet.
+    private Map<Badge, Long> badges;
+}
@@ -0,0 +1,22 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.ContestScore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Response body for one page of a contest leaderboard, sorted by contest score then userId.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContestLeaderboardPage {
+
+    private String contestId;
+    private List<ContestScore> entries;
+    // Zero-based page number.
+    private int page;
+    private int limit;
+    private boolean hasNext;
+}
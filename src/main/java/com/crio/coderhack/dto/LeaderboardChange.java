@@ -0,0 +1,26 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.Badge;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+// The latest state of one user within a pushed leaderboard diff.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LeaderboardChange {
+
+    private String userId;
+    private String username;
+    private Integer score;
+    private Set<Badge> badges;
+    // Rank at the time the diff was sent; null if the leaderboard index is not loaded.
+    private Long rank;
+    // true if the user was deleted; the other fields are then null.
+    private boolean removed;
+}
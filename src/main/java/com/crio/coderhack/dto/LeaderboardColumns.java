@@ -0,0 +1,43 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The leaderboard with one array per field instead of one object per user, so field names and
+// badge names are not repeated for every user. Entry i of each array belongs to the i-th user in
+// leaderboard order. Badges are a bit mask with bit i set for the i-th constant of Badge
+// (1 = CODE_NINJA, 2 = CODE_CHAMP, 4 = CODE_MASTER).
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardColumns {
+
+    private List<String> userIds;
+    private List<String> usernames;
+    private int[] scores;
+    private int[] badgeMasks;
+
+    /**
+     * @param users The leaderboard, in order.
+     * @return The same users as columns.
+     */
+    public static LeaderboardColumns of(List<User> users) {
+        List<String> userIds = new ArrayList<>(users.size());
+        List<String> usernames = new ArrayList<>(users.size());
+        int[] scores = new int[users.size()];
+        int[] badgeMasks = new int[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            userIds.add(user.getUserId());
+            usernames.add(user.getUsername());
+            scores[i] = user.getScore();
+            badgeMasks[i] = user.getBadgeMask();
+        }
+        return new LeaderboardColumns(userIds, usernames, scores, badgeMasks);
+    }
+}
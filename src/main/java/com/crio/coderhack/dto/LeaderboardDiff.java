@@ -0,0 +1,18 @@
+package com.crio.coderhack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One pushed leaderboard message: every user that changed during a push window, once each.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardDiff {
+
+    // Increases by one per message, so clients can detect a gap and re-fetch GET /users.
+    private long version;
+    private List<LeaderboardChange> changes;
+}
@@ -0,0 +1,25 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Response body for one page of the leaderboard, sorted by score then userId.
+// For keyset pagination, pass nextAfterScore/nextAfterUserId back as afterScore/afterUserId.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardPage {
+
+    private List<User> users;
+    // Zero-based page number, or null when the page was requested with a cursor.
+    private Integer page;
+    private int limit;
+    private boolean hasNext;
+    // Cursor of the last user on this page; null when the page is empty.
+    private Integer nextAfterScore;
+    private String nextAfterUserId;
+}
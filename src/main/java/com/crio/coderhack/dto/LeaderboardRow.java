@@ -0,0 +1,28 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.Badge;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Set;
+
+// Closed interface projection of a User for leaderboard listings.
+// Spring Data derives the query's field list from these getters, so MongoDB only returns
+// these fields and skips anything else stored on the document (e.g. the _class hint).
+// Serialized in the same field order as User, so a row reads exactly like the user it came from.
+@JsonPropertyOrder({"userId", "username", "score", "badges"})
+public interface LeaderboardRow {
+
+    String getUserId();
+
+    String getUsername();
+
+    int getScore();
+
+    @JsonIgnore
+    int getBadgeMask();
+
+    default Set<Badge> getBadges() {
+        return Badge.fromMask(getBadgeMask());
+    }
+}
@@ -0,0 +1,20 @@
+package com.crio.coderhack.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one item of a batch registration, in the same order as the request items.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RegistrationResult {
+
+    private String userId;
+    // HTTP status the item would have received as a single POST /users: 200, 400 or 409.
+    private int status;
+    // Reason for a failed item; null on success.
+    private String error;
+}
@@ -0,0 +1,19 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.Badge;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+// A validated score change ready to be written: the new score and the badges to add with it.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreChange {
+
+    private String userId;
+    private int score;
+    private Set<Badge> badges;
+}
@@ -0,0 +1,20 @@
+package com.crio.coderhack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Response body for where a score stands on the leaderboard.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScorePercentile {
+
+    private int score;
+    // The rank a user with this score would have: 1 plus the number of users with a strictly higher score.
+    private long rank;
+    private long usersAtOrBelow;
+    private long totalUsers;
+    // Percentage of users scoring at most this score (0-100); 0 while there are no users.
+    private double percentile;
+}
@@ -0,0 +1,27 @@
+package com.crio.coderhack.dto;
+
+import com.crio.coderhack.entity.ScoreStatsMinute;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Response body for GET /stats: score change aggregates over the last few minutes.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreStats {
+
+    // The window is [from, to); from is the start of the oldest minute included.
+    private Instant from;
+    private Instant to;
+    // Totals over the window.
+    private long submissions;
+    private Map<String, Long> scores;
+    private Map<String, Long> badgeAwards;
+    // One entry per minute that had at least one score change, oldest first.
+    private List<ScoreStatsMinute> minutes;
+}
@@ -0,0 +1,16 @@
+package com.crio.coderhack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One item of a batch score update: { "userId": "string", "score": 10 }
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreUpdate {
+
+    private String userId;
+    // Boxed so a missing score can be reported per item instead of silently becoming 0.
+    private Integer score;
+}
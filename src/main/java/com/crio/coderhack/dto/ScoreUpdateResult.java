@@ -0,0 +1,21 @@
+package com.crio.coderhack.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one item of a batch score update, in the same order as the request items.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScoreUpdateResult {
+
+    private String userId;
+    // HTTP status the item would have received as a single PUT /users/{userId}: 200, 400 or 404,
+    // or 429 when admission control held it back because its user is over the per-user rate.
+    private int status;
+    // Reason for a failed item; null on success.
+    private String error;
+}
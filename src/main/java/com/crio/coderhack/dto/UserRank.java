@@ -0,0 +1,18 @@
+package com.crio.coderhack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Response body for the rank of a single user on the leaderboard.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRank {
+
+    private String userId;
+    private int score;
+    // 1 plus the number of users with a strictly higher score, so tied users share a rank.
+    private long rank;
+    private long totalUsers;
+}
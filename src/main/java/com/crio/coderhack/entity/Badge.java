@@ -1,10 +1,51 @@
 package com.crio.coderhack.entity;
 
-
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
 
 // Enum to represent the different types of badges a user can earn.
+// A set of badges can also be stored as a bit mask with one bit per constant (bit = ordinal),
+// so new badges must be added at the end to keep existing masks valid.
 public enum Badge {
     CODE_NINJA,   // Awarded for scores >= 1
     CODE_CHAMP,   // Awarded for scores >= 30
-    CODE_MASTER   // Awarded for scores >= 60
+    CODE_MASTER;  // Awarded for scores >= 60
+
+    private static final Badge[] VALUES = values();
+
+    /**
+     * @return The bit that represents this badge in a badge mask.
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @param badges The badges to encode; may be null.
+     * @return A mask with the bit of every given badge set.
+     */
+    public static int toMask(Collection<Badge> badges) {
+        int mask = 0;
+        if (badges != null) {
+            for (Badge badge : badges) {
+                mask |= badge.bit();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @param mask A badge mask built by toMask.
+     * @return A new, modifiable set with the badges whose bits are set.
+     */
+    public static Set<Badge> fromMask(int mask) {
+        Set<Badge> badges = EnumSet.noneOf(Badge.class);
+        for (Badge badge : VALUES) {
+            if ((mask & badge.bit()) != 0) {
+                badges.add(badge);
+            }
+        }
+        return badges;
+    }
 }
@@ -0,0 +1,61 @@
+package com.crio.coderhack.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Set;
+
+// A user's score in one contest, kept in its own "contest_scores" collection so that each contest
+// is a separate leaderboard. Every contest query is scoped by contestId and the contest indexes start
+// with it, so one busy contest only touches its own part of the indexes, and { contestId: 1, score: 1 }
+// can become the shard key later. The global score on User is not affected.
+@Document(collection = "contest_scores")
+// One entry per (contest, user); also answers single-entry lookups.
+@CompoundIndex(name = "contestId_userId", def = "{'contestId': 1, 'userId': 1}", unique = true)
+// Contest leaderboard order: score ascending, userId as the tiebreaker.
+@CompoundIndex(name = "contestId_score_userId", def = "{'contestId': 1, 'score': 1, 'userId': 1}")
+// Removes a deleted user's entries from every contest without a collection scan.
+@CompoundIndex(name = "userId", def = "{'userId': 1}")
+@Data
+@NoArgsConstructor
+public class ContestScore {
+
+    @JsonIgnore
+    private @Id String id;
+    private String contestId;
+    private String userId;
+    // Copied from the user when the entry is created, so contest leaderboards need no join.
+    private String username;
+    private int score;
+    // Badges earned in this contest, as a bit mask like User.badgeMask.
+    @JsonIgnore
+    private int badgeMask;
+
+    public ContestScore(String contestId, String userId, String username, int score, Set<Badge> badges) {
+        this.contestId = contestId;
+        this.userId = userId;
+        this.username = username;
+        this.score = score;
+        this.badgeMask = Badge.toMask(badges);
+    }
+
+    /**
+     * @return A new set with the badges earned in this contest.
+     */
+    @Transient
+    public Set<Badge> getBadges() {
+        return Badge.fromMask(badgeMask);
+    }
+
+    /**
+     * @param badges The badges to hold instead of the current ones; null means none.
+     */
+    public void setBadges(Set<Badge> badges) {
+        this.badgeMask = Badge.toMask(badges);
+    }
+}
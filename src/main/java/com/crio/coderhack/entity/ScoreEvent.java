@@ -0,0 +1,54 @@
+package com.crio.coderhack.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.Instant;
+import java.util.Set;
+
+// One accepted score change, appended to the "score_events" history by ScoreEventLog and never updated.
+// The collection is a MongoDB time series bucketed by user (created by MongoIndexInitializer), which
+// stores consecutive events of a user together and compressed; single-letter field names keep each event small.
+// Per-user history reads are a backward range scan of (userId, time), so they cost the same
+// however long the history is.
+@TimeSeries(collection = "score_events", timeField = "time", metaField = "userId", granularity = Granularity.SECONDS)
+@CompoundIndex(name = "userId_time", def = "{'u': 1, 't': -1}")
+@Data
+@NoArgsConstructor
+public class ScoreEvent {
+
+    // Generated by the driver on insert; with time it forms the cursor for paging through the history.
+    private @Id String id;
+    @Field("t")
+    private Instant time;
+    @Field("u")
+    private String userId;
+    @Field("s")
+    private int score;
+    // Badges the user did not hold before this change, as a Badge mask; 0 for most events.
+    @Field("a")
+    @JsonIgnore
+    private int awardedMask;
+
+    public ScoreEvent(Instant time, String userId, int score, int awardedMask) {
+        this.time = time;
+        this.userId = userId;
+        this.score = score;
+        this.awardedMask = awardedMask;
+    }
+
+    /**
+     * @return The badges first earned with this score change.
+     */
+    @Transient
+    public Set<Badge> getAwardedBadges() {
+        return Badge.fromMask(awardedMask);
+    }
+}
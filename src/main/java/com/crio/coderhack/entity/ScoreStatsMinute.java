@@ -0,0 +1,27 @@
+package com.crio.coderhack.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Rolling aggregates of the score events of one minute, in the "score_stats" collection.
+// ScoreEventLog increments them with $inc upserts as it writes each batch of events, so every
+// instance adds to the same documents and reading any window costs one document per minute.
+@Document(collection = "score_stats")
+@Data
+@NoArgsConstructor
+public class ScoreStatsMinute {
+
+    // Start of the minute (UTC).
+    private @Id Instant minute;
+    // Score changes accepted in this minute.
+    private long submissions;
+    // Submitted scores by range ("0-9", "10-19", ..., "90-99", "100"); empty ranges are absent.
+    private Map<String, Long> scores;
+    // First-time badge awards by badge name; absent badges were not awarded.
+    private Map<String, Long> badgeAwards;
+}
@@ -1,37 +1,80 @@
 package com.crio.coderhack.entity;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Set;
 
 // @Document annotation marks this class as a MongoDB document.
 // The collection name in MongoDB will be "users" by default (lowercase class name).
 @Document(collection = "users")
+// Leaderboard order: score ascending, userId (_id) as the tiebreaker. The sorted leaderboard queries,
+// keyset pages and rank counts in UserRepository walk this index instead of sorting in memory.
+// Created at startup by MongoIndexInitializer.
+@CompoundIndex(name = "score_userId", def = "{'score': 1, '_id': 1}")
 // @Data from Lombok generates getters, setters, toString, equals, and hashCode methods.
 @Data
 // @NoArgsConstructor from Lombok generates a no-argument constructor.
 @NoArgsConstructor
-// @AllArgsConstructor from Lombok generates a constructor with all fields as arguments.
-@AllArgsConstructor
 public class User {
 
     // @Id marks this field as the primary key in MongoDB.
     private @Id String userId;
     private String username;
     private int score;
-    // Using a Set to store badges ensures uniqueness and no specific order.
-    private Set<Badge> badges = new HashSet<>();
+    // Earned badges as a bit mask (see Badge.toMask), stored as a single int instead of an array of names.
+    // The JSON API keeps exposing the badge names through getBadges/setBadges.
+    // Documents written before this field existed carry a "badges" array instead; LegacyBadgeMigration
+    // folds it into the mask when the document is read and rewrites the document in the new form.
+    @JsonIgnore
+    private int badgeMask;
+    // Incremented by every score update in the same write (see UserRepositoryImpl), so the copies kept
+    // in memory can tell which of two documents for the same user is newer. 0 for a new user.
+    @JsonIgnore
+    private long version;
 
     // Constructor for initial user registration
     public User(String userId, String username) {
         this.userId = userId;
         this.username = username;
         this.score = 0; // Initial score is 0
-        this.badges = new HashSet<>(); // Initial badges are empty
+        this.badgeMask = 0; // Initial badges are empty
+    }
+
+    public User(String userId, String username, int score, Set<Badge> badges) {
+        this.userId = userId;
+        this.username = username;
+        this.score = score;
+        this.badgeMask = Badge.toMask(badges);
+    }
+
+    /**
+     * @return A new set with the earned badges; changing it does not change the user.
+     */
+    @Transient
+    public Set<Badge> getBadges() {
+        return Badge.fromMask(badgeMask);
+    }
+
+    /**
+     * @param badges The badges to hold instead of the current ones; null means none.
+     */
+    public void setBadges(Set<Badge> badges) {
+        this.badgeMask = Badge.toMask(badges);
+    }
+
+    /**
+     * Adds badges to the ones already earned.
+     *
+     * @param badges The badges to add.
+     */
+    public void addBadges(Collection<Badge> badges) {
+        this.badgeMask |= Badge.toMask(badges);
     }
 }
@@ -0,0 +1,30 @@
+package com.crio.coderhack.event;
+
+import com.crio.coderhack.entity.User;
+import lombok.Data;
+
+// Application event published after a user is registered, rescored or deleted.
+// Listeners (live leaderboard push and similar read-side structures) react to it
+// instead of UserService having to know about each of them.
+@Data
+public class UserChangeEvent {
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    private final Type type;
+    private final String userId;
+    // The user as now stored; null for DELETE. After a bulk score update the username
+    // may be null if the in-memory index did not know the user.
+    private final User user;
+
+    public static UserChangeEvent upserted(User user) {
+        return new UserChangeEvent(Type.UPSERT, user.getUserId(), user);
+    }
+
+    public static UserChangeEvent deleted(String userId) {
+        return new UserChangeEvent(Type.DELETE, userId, null);
+    }
+}
@@ -0,0 +1,88 @@
+package com.crio.coderhack.metrics;
+
+import com.crio.coderhack.dto.LeaderboardPage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Times every public UserService operation without touching the service code.
+// Each call is recorded in the coderhack.user.operation timer, tagged with the method name and an
+// outcome: "ok", the HTTP status of a ResponseStatusException ("400", "404", "409"), "404" for an
+// empty Optional, or "error" for anything else. The timer's count doubles as the per-outcome counter.
+// Leaderboard reads also record how many users they returned in coderhack.leaderboard.result.size.
+// Meters are looked up once per (operation, outcome) and cached, so the hot path only pays for
+// two nanoTime calls and a map lookup.
+// Ordered outside AdmissionControl, so calls it rejects are recorded with outcome "429" or "503".
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class UserServiceMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> resultSizes = new ConcurrentHashMap<>();
+
+    // Constructor injection for the metrics registry
+    @Autowired
+    public UserServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.crio.coderhack.service.UserService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            Object result = joinPoint.proceed();
+            outcome = result instanceof Optional && ((Optional<?>) result).isEmpty() ? "404" : "ok";
+            recordResultSize(operation, result);
+            return result;
+        } catch (ResponseStatusException e) {
+            outcome = String.valueOf(e.getStatusCode().value());
+            throw e;
+        } finally {
+            timer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordResultSize(String operation, Object result) {
+        int size;
+        if (result instanceof LeaderboardPage) {
+            size = ((LeaderboardPage) result).getUsers().size();
+        } else if (result instanceof Collection && operation.equals("getAllUsers")) {
+            size = ((Collection<?>) result).size();
+        } else {
+            return;
+        }
+        resultSizes.computeIfAbsent(operation, name -> DistributionSummary.builder("coderhack.leaderboard.result.size")
+                .description("Users returned by a leaderboard read")
+                .baseUnit("users")
+                .tag("operation", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry)).record(size);
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return timers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder("coderhack.user.operation")
+                .description("UserService operations by outcome")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
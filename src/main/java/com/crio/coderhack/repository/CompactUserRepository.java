@@ -0,0 +1,1105 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.dto.LeaderboardRow;
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// UserRepository for the "inmemory" profile: single-node contest runs without MongoDB.
+// Users are not kept as objects. Each one is a slot in a few primitive arrays:
+//   scores      int per slot
+//   badgeMasks  byte per slot, one bit per Badge (see Badge.toMask)
+//   idRefs      int per slot, offset of the userId in the string arena
+//   nameRefs    int per slot, offset of the username in the string arena
+//   hashes      int per slot, hash of the userId bytes
+//   versions    long per slot, User.version: as saved, then the store version of each score update
+//   allocationStamps  int per slot, which allocation put the current user there (for streams)
+// The string arena is a single byte array of length-prefixed UTF-8 strings, and userId lookups go
+// through an open-addressing table of slot numbers. That is roughly 45 bytes per user plus the
+// UTF-8 bytes of its ID and name, in a handful of arrays the garbage collector never has to trace,
+// so millions of users fit in a small heap. User objects only exist for the users a call returns.
+//
+// Sorted queries return the leaderboard order: score, then userId compared byte by byte in UTF-8,
+// which is how MongoDB orders strings. The sorted slot order is cached until the next write.
+//
+// With coderhack.inmemory.snapshot-path set, the arrays are written to a memory-mapped file every
+// snapshot-interval-ms (if anything changed) and on shutdown, and copied back in bulk at startup,
+// so a restart does not re-register anyone. Writes after the last snapshot are lost on a crash.
+@Repository
+@Profile("inmemory")
+public class CompactUserRepository implements UserRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactUserRepository.class);
+
+    // Snapshot file layout, all integers big-endian:
+    //   header: magic, format version, user count, arena length
+    //   int[count] scores, byte[count] badge masks, int[count] userId refs, int[count] username refs, byte[] arena
+    private static final int MAGIC = 0x43485553;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int BYTES_PER_USER = 13;
+
+    // nameRefs value of a user without a username.
+    private static final int NO_STRING = -1;
+    // idRefs value of a slot that does not hold a user.
+    private static final int FREE = -2;
+    // Users read per read-lock acquisition while a stream is consumed.
+    private static final int STREAM_CHUNK = 1024;
+
+    private final Path snapshotPath;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ---- guarded by lock ----
+    private int[] scores;
+    private byte[] badgeMasks;
+    private int[] idRefs;
+    private int[] nameRefs;
+    private int[] hashes;
+    // User.version per slot. Saves keep the given version, like MongoDB; score updates stamp the store
+    // version, which only grows, so each update of a user yields a higher one. Not part of the snapshot.
+    private long[] versions;
+    // Which allocation put the user in each slot, from allocationCount; tells a reused slot from the
+    // user a stream saw there. Not part of the snapshot.
+    private int[] allocationStamps;
+    // Slots below slotCount have been used; freed ones are reused first.
+    private int slotCount;
+    private int[] freeSlots;
+    private int freeCount;
+    private int size;
+    // slot + 1 per bucket, 0 for an empty bucket. The length is a power of two, at most half full.
+    private int[] table;
+    private byte[] strings;
+    private int stringsLength;
+    // Arena bytes no longer referenced by any slot; reclaimed once they make up half the arena.
+    private int deadStringBytes;
+    // Incremented by every write; labels the cached sort order and tells the snapshot task whether to run.
+    private long version;
+    // Incremented by every slot allocation; never reset, so stamps stay unique across deleteAll.
+    private int allocationCount;
+
+    private volatile SortedView sortedView;
+    // One snapshot at a time. Not a monitor: snapshots do file I/O and run on virtual threads in the
+    // virtual profile, where blocking inside synchronized would pin the carrier thread.
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // Guarded by snapshotLock.
+    private long snapshotVersion;
+
+    // Constructor injection for the snapshot file; an empty path keeps everything in memory only
+    @Autowired
+    public CompactUserRepository(@Value("${coderhack.inmemory.snapshot-path:}") String snapshotPath) {
+        this.snapshotPath = snapshotPath.isEmpty() ? null : Path.of(snapshotPath);
+        reset(16, 1024);
+        if (this.snapshotPath != null && Files.exists(this.snapshotPath)) {
+            restore(this.snapshotPath);
+        }
+    }
+
+    // ---- UserRepository queries ----
+
+    @Override
+    public List<User> findAllByOrderByScoreAsc() {
+        return read(() -> toList(sortedLocked(), 0, Integer.MAX_VALUE, this::toUser));
+    }
+
+    @Override
+    public long countByScoreGreaterThan(int score) {
+        return read(() -> {
+            long count = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (idRefs[slot] != FREE && scores[slot] > score) {
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public long countByBadgeMaskBitsAllSet(int bits) {
+        return read(() -> {
+            long count = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (idRefs[slot] != FREE && (badgeMasks[slot] & bits) == bits) {
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public Slice<User> findAllBy(Pageable pageable) {
+        return read(() -> toSlice(orderFor(pageable.getSort()), offset(pageable), pageable, this::toUser));
+    }
+
+    @Override
+    public Slice<User> findAllAfter(int score, String userId, Pageable pageable) {
+        byte[] key = utf8(userId);
+        return read(() -> {
+            int[] sorted = sortedLocked();
+            // First position sorted strictly after (score, userId).
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareToKey(sorted[mid], score, key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return toSlice(sorted, low + offset(pageable), pageable, this::toUser);
+        });
+    }
+
+    /**
+     * Streams the leaderboard like a cursor: the order is fixed when the stream is created and users
+     * are read in chunks as it is consumed. Users deleted in the meantime are skipped, also when their
+     * slot has been given to a new user since: each slot is read only if it still has the allocation
+     * stamp it had when the stream was created.
+     */
+    @Override
+    public Stream<LeaderboardRow> streamRowsByOrderByScoreAscUserIdAsc() {
+        int[][] cursor = read(() -> {
+            int[] sorted = sortedLocked();
+            int[] stamps = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                stamps[i] = allocationStamps[sorted[i]];
+            }
+            return new int[][] {sorted, stamps};
+        });
+        int[] sorted = cursor[0];
+        int[] stamps = cursor[1];
+        int chunks = (sorted.length + STREAM_CHUNK - 1) / STREAM_CHUNK;
+        return IntStream.range(0, chunks)
+                .mapToObj(chunk -> read(() -> {
+                    int end = Math.min(sorted.length, (chunk + 1) * STREAM_CHUNK);
+                    List<LeaderboardRow> rows = new ArrayList<>(end - chunk * STREAM_CHUNK);
+                    for (int i = chunk * STREAM_CHUNK; i < end; i++) {
+                        int slot = sorted[i];
+                        // deleteAll may have shrunk the arrays since; FREE slots keep their old stamp.
+                        if (slot < slotCount && idRefs[slot] != FREE && allocationStamps[slot] == stamps[i]) {
+                            rows.add(toRow(slot));
+                        }
+                    }
+                    return rows;
+                }))
+                .flatMap(List::stream);
+    }
+
+    // ---- UserRepositoryCustom ----
+
+    @Override
+    public Optional<User> updateScoreAndAddBadges(String userId, int score, Set<Badge> badges) {
+        byte[] id = utf8(userId);
+        return write(() -> {
+            int slot = find(id, hash(id, 0, id.length));
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            applyScore(slot, score, badges);
+            return Optional.of(toUser(slot));
+        });
+    }
+
+    @Override
+    public Set<String> bulkUpdateScores(Collection<ScoreChange> changes) {
+        return write(() -> {
+            Set<String> missing = new HashSet<>();
+            for (ScoreChange change : changes) {
+                byte[] id = utf8(change.getUserId());
+                int slot = find(id, hash(id, 0, id.length));
+                if (slot < 0) {
+                    missing.add(change.getUserId());
+                } else {
+                    applyScore(slot, change.getScore(), change.getBadges());
+                }
+            }
+            return missing;
+        });
+    }
+
+    @Override
+    public Set<Integer> insertNewUsers(List<User> users) {
+        return write(() -> {
+            Set<Integer> duplicates = new HashSet<>();
+            for (int i = 0; i < users.size(); i++) {
+                if (!insertLocked(users.get(i))) {
+                    duplicates.add(i);
+                }
+            }
+            return duplicates;
+        });
+    }
+
+    // ---- MongoRepository / CrudRepository ----
+
+    @Override
+    public <S extends User> S insert(S entity) {
+        if (!write(() -> insertLocked(entity))) {
+            throw duplicateKey(entity.getUserId());
+        }
+        return entity;
+    }
+
+    // Like an ordered insertMany: stops at the first duplicate, keeping the users inserted before it.
+    @Override
+    public <S extends User> List<S> insert(Iterable<S> entities) {
+        List<S> inserted = new ArrayList<>();
+        for (S entity : entities) {
+            inserted.add(insert(entity));
+        }
+        return inserted;
+    }
+
+    @Override
+    public <S extends User> S save(S entity) {
+        String userId = requireId(entity);
+        byte[] id = utf8(userId);
+        write(() -> {
+            int hash = hash(id, 0, id.length);
+            int slot = find(id, hash);
+            if (slot < 0) {
+                allocate(id, hash, entity);
+            } else {
+                scores[slot] = entity.getScore();
+                badgeMasks[slot] = (byte) entity.getBadgeMask();
+                releaseString(nameRefs[slot]);
+                nameRefs[slot] = entity.getUsername() == null ? NO_STRING : appendString(utf8(entity.getUsername()));
+                versions[slot] = entity.getVersion();
+                version++;
+                compactStringsIfWasteful();
+            }
+            return null;
+        });
+        return entity;
+    }
+
+    @Override
+    public <S extends User> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(String userId) {
+        Assert.notNull(userId, "The given id must not be null");
+        byte[] id = utf8(userId);
+        return read(() -> {
+            int slot = find(id, hash(id, 0, id.length));
+            return slot < 0 ? Optional.empty() : Optional.of(toUser(slot));
+        });
+    }
+
+    @Override
+    public boolean existsById(String userId) {
+        Assert.notNull(userId, "The given id must not be null");
+        byte[] id = utf8(userId);
+        return read(() -> find(id, hash(id, 0, id.length)) >= 0);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return read(() -> toList(liveSlots(), 0, Integer.MAX_VALUE, this::toUser));
+    }
+
+    @Override
+    public List<User> findAll(Sort sort) {
+        return read(() -> toList(orderFor(sort), 0, Integer.MAX_VALUE, this::toUser));
+    }
+
+    @Override
+    public Page<User> findAll(Pageable pageable) {
+        return read(() -> {
+            int[] order = orderFor(pageable.getSort());
+            List<User> content = pageable.isPaged()
+                    ? toList(order, pageable.getOffset(), pageable.getPageSize(), this::toUser)
+                    : toList(order, 0, Integer.MAX_VALUE, this::toUser);
+            return new PageImpl<>(content, pageable, order.length);
+        });
+    }
+
+    @Override
+    public List<User> findAllById(Iterable<String> userIds) {
+        List<User> users = new ArrayList<>();
+        for (String userId : userIds) {
+            findById(userId).ifPresent(users::add);
+        }
+        return users;
+    }
+
+    @Override
+    public long count() {
+        return read(() -> (long) size);
+    }
+
+    @Override
+    public void deleteById(String userId) {
+        Assert.notNull(userId, "The given id must not be null");
+        byte[] id = utf8(userId);
+        write(() -> {
+            int slot = find(id, hash(id, 0, id.length));
+            if (slot >= 0) {
+                free(slot);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(User entity) {
+        deleteById(requireId(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> userIds) {
+        for (String userId : userIds) {
+            deleteById(userId);
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends User> entities) {
+        for (User entity : entities) {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        write(() -> {
+            reset(16, 1024);
+            version++;
+            return null;
+        });
+    }
+
+    // ---- Query by example: not used by the application ----
+
+    @Override
+    public <S extends User> Optional<S> findOne(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends User> List<S> findAll(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends User> List<S> findAll(Example<S> example, Sort sort) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends User> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends User> long count(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends User> boolean exists(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends User, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw queryByExample();
+    }
+
+    // ---- snapshots ----
+
+    /**
+     * Writes a snapshot if anything changed since the last one. Runs every snapshot-interval-ms.
+     */
+    @Scheduled(fixedDelayString = "${coderhack.inmemory.snapshot-interval-ms:60000}")
+    public void snapshotIfChanged() {
+        if (snapshotPath == null) {
+            return;
+        }
+        try {
+            snapshotIfChanged(snapshotPath);
+        } catch (RuntimeException e) {
+            log.warn("Could not write the user snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    /**
+     * Writes a final snapshot before the application context closes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (snapshotPath == null) {
+            return;
+        }
+        try {
+            snapshotIfChanged(snapshotPath);
+        } catch (RuntimeException e) {
+            log.error("Could not write the user snapshot to {}; changes since the last snapshot are lost", snapshotPath, e);
+        }
+    }
+
+    /**
+     * Writes every user to a memory-mapped file, replacing it atomically once complete. Writers wait
+     * while the users are copied into the mapping; the flush to disk happens after the lock is released.
+     * Free slots and unreferenced arena bytes are left out, so the file is also compacted.
+     *
+     * @param path The snapshot file.
+     */
+    public void snapshot(Path path) {
+        snapshotLock.lock();
+        try {
+            writeSnapshotFile(path);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // Caller holds snapshotLock.
+    private void writeSnapshotFile(Path path) {
+        long start = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long written;
+        int users;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer out;
+                lock.readLock().lock();
+                try {
+                    written = version;
+                    users = size;
+                    out = writeSnapshot(channel);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                out.force();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        snapshotVersion = written;
+        log.info("Wrote {} users to {} in {} ms", users, path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void snapshotIfChanged(Path path) {
+        snapshotLock.lock();
+        try {
+            if (read(() -> version) != snapshotVersion) {
+                writeSnapshotFile(path);
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // Caller holds the read lock.
+    private MappedByteBuffer writeSnapshot(FileChannel channel) throws IOException {
+        long arenaBytes = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (idRefs[slot] != FREE) {
+                arenaBytes += recordBytes(strings, idRefs[slot]);
+                if (nameRefs[slot] != NO_STRING) {
+                    arenaBytes += recordBytes(strings, nameRefs[slot]);
+                }
+            }
+        }
+        long fileBytes = HEADER_BYTES + (long) size * BYTES_PER_USER + arenaBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot of " + size + " users exceeds 2 GB");
+        }
+        MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        out.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, size).putInt(12, (int) arenaBytes);
+        int scoresAt = HEADER_BYTES;
+        int masksAt = scoresAt + 4 * size;
+        int idsAt = masksAt + size;
+        int namesAt = idsAt + 4 * size;
+        int arenaAt = namesAt + 4 * size;
+        int arenaLength = 0;
+        int i = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (idRefs[slot] == FREE) {
+                continue;
+            }
+            out.putInt(scoresAt + 4 * i, scores[slot]);
+            out.put(masksAt + i, badgeMasks[slot]);
+            out.putInt(idsAt + 4 * i, arenaLength);
+            int idBytes = recordBytes(strings, idRefs[slot]);
+            out.put(arenaAt + arenaLength, strings, idRefs[slot], idBytes);
+            arenaLength += idBytes;
+            if (nameRefs[slot] == NO_STRING) {
+                out.putInt(namesAt + 4 * i, NO_STRING);
+            } else {
+                out.putInt(namesAt + 4 * i, arenaLength);
+                int nameBytes = recordBytes(strings, nameRefs[slot]);
+                out.put(arenaAt + arenaLength, strings, nameRefs[slot], nameBytes);
+                arenaLength += nameBytes;
+            }
+            i++;
+        }
+        return out;
+    }
+
+    // Maps the snapshot and bulk-copies each array out of it; only the userId table is rebuilt.
+    // A file that cannot be read fails startup rather than starting empty and overwriting it on shutdown.
+    private void restore(Path path) {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_BYTES || in.getInt(0) != MAGIC || in.getInt(4) != FORMAT_VERSION) {
+                throw new IllegalStateException(path + " is not a user snapshot");
+            }
+            int count = in.getInt(8);
+            int arenaBytes = in.getInt(12);
+            if (channel.size() != HEADER_BYTES + (long) count * BYTES_PER_USER + arenaBytes) {
+                throw new IllegalStateException(path + " is truncated");
+            }
+            lock.writeLock().lock();
+            try {
+                reset(count + count / 4 + 16, arenaBytes + arenaBytes / 4 + 1024);
+                int masksAt = HEADER_BYTES + 4 * count;
+                int idsAt = masksAt + count;
+                int namesAt = idsAt + 4 * count;
+                int arenaAt = namesAt + 4 * count;
+                in.position(HEADER_BYTES);
+                in.asIntBuffer().get(scores, 0, count);
+                in.get(masksAt, badgeMasks, 0, count);
+                in.position(idsAt);
+                in.asIntBuffer().get(idRefs, 0, count);
+                in.position(namesAt);
+                in.asIntBuffer().get(nameRefs, 0, count);
+                in.get(arenaAt, strings, 0, arenaBytes);
+                stringsLength = arenaBytes;
+                slotCount = count;
+                size = count;
+                table = new int[tableCapacity(count)];
+                for (int slot = 0; slot < count; slot++) {
+                    int ref = idRefs[slot];
+                    int length = stringLength(strings, ref);
+                    hashes[slot] = hash(strings, ref + varintBytes(length), length);
+                    allocationStamps[slot] = ++allocationCount;
+                    tableInsert(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Restored {} users from {} in {} ms", size, path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ---- slots; callers hold the write lock unless noted ----
+
+    private void reset(int slotCapacity, int stringCapacity) {
+        scores = new int[slotCapacity];
+        badgeMasks = new byte[slotCapacity];
+        idRefs = new int[slotCapacity];
+        nameRefs = new int[slotCapacity];
+        hashes = new int[slotCapacity];
+        versions = new long[slotCapacity];
+        allocationStamps = new int[slotCapacity];
+        slotCount = 0;
+        freeSlots = new int[16];
+        freeCount = 0;
+        size = 0;
+        table = new int[tableCapacity(0)];
+        strings = new byte[stringCapacity];
+        stringsLength = 0;
+        deadStringBytes = 0;
+    }
+
+    private boolean insertLocked(User user) {
+        byte[] id = utf8(requireId(user));
+        int hash = hash(id, 0, id.length);
+        if (find(id, hash) >= 0) {
+            return false;
+        }
+        allocate(id, hash, user);
+        return true;
+    }
+
+    private void allocate(byte[] id, int hash, User user) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == scores.length) {
+                growSlots();
+            }
+            slot = slotCount++;
+        }
+        scores[slot] = user.getScore();
+        badgeMasks[slot] = (byte) user.getBadgeMask();
+        idRefs[slot] = appendString(id);
+        nameRefs[slot] = user.getUsername() == null ? NO_STRING : appendString(utf8(user.getUsername()));
+        hashes[slot] = hash;
+        size++;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            tableInsert(slot);
+        }
+        versions[slot] = user.getVersion();
+        allocationStamps[slot] = ++allocationCount;
+        version++;
+    }
+
+    private void free(int slot) {
+        tableRemove(slot);
+        releaseString(idRefs[slot]);
+        releaseString(nameRefs[slot]);
+        idRefs[slot] = FREE;
+        nameRefs[slot] = NO_STRING;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        version++;
+        compactStringsIfWasteful();
+    }
+
+    // Same semantics as the $set/$bit update in UserRepositoryImpl.
+    private void applyScore(int slot, int score, Set<Badge> badges) {
+        scores[slot] = score;
+        badgeMasks[slot] |= (byte) Badge.toMask(badges);
+        versions[slot] = ++version;
+    }
+
+    private void growSlots() {
+        int capacity = scores.length + (scores.length >> 1) + 16;
+        scores = Arrays.copyOf(scores, capacity);
+        badgeMasks = Arrays.copyOf(badgeMasks, capacity);
+        idRefs = Arrays.copyOf(idRefs, capacity);
+        nameRefs = Arrays.copyOf(nameRefs, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        allocationStamps = Arrays.copyOf(allocationStamps, capacity);
+    }
+
+    // Callers hold at least the read lock.
+    private int[] liveSlots() {
+        int[] slots = new int[size];
+        int i = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (idRefs[slot] != FREE) {
+                slots[i++] = slot;
+            }
+        }
+        return slots;
+    }
+
+    private User toUser(int slot) {
+        User user = new User(readString(idRefs[slot]), readString(nameRefs[slot]));
+        user.setScore(scores[slot]);
+        user.setBadgeMask(badgeMasks[slot]);
+        user.setVersion(versions[slot]);
+        return user;
+    }
+
+    private LeaderboardRow toRow(int slot) {
+        return new Row(readString(idRefs[slot]), readString(nameRefs[slot]), scores[slot], badgeMasks[slot]);
+    }
+
+    // ---- userId table: open addressing with linear probing ----
+
+    // Callers hold at least the read lock. Returns the slot of the userId, or -1.
+    private int find(byte[] id, int hash) {
+        int mask = table.length - 1;
+        for (int bucket = hash & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int slot = table[bucket] - 1;
+            if (hashes[slot] == hash && stringEquals(idRefs[slot], id)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void tableInsert(int slot) {
+        int mask = table.length - 1;
+        int bucket = hashes[slot] & mask;
+        while (table[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = slot + 1;
+    }
+
+    // Backward-shift deletion: later entries of the probe run move into the gap, so no tombstones are needed.
+    private void tableRemove(int slot) {
+        int mask = table.length - 1;
+        int gap = hashes[slot] & mask;
+        while (table[gap] != slot + 1) {
+            gap = (gap + 1) & mask;
+        }
+        for (int bucket = (gap + 1) & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int home = hashes[table[bucket] - 1] & mask;
+            // The entry may fill the gap unless its home bucket lies between the gap and its current bucket.
+            if (((bucket - home) & mask) >= ((bucket - gap) & mask)) {
+                table[gap] = table[bucket];
+                gap = bucket;
+            }
+        }
+        table[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (idRefs[slot] != FREE) {
+                tableInsert(slot);
+            }
+        }
+    }
+
+    private static int tableCapacity(int users) {
+        int capacity = 16;
+        while (capacity < users * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // ---- string arena: each string is a varint byte length followed by its UTF-8 bytes ----
+
+    private int appendString(byte[] bytes) {
+        int needed = varintBytes(bytes.length) + bytes.length;
+        if (stringsLength + needed > strings.length) {
+            long capacity = Math.max((long) strings.length + (strings.length >> 1), (long) stringsLength + needed);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("User IDs and names exceed the 2 GB string arena");
+            }
+            strings = Arrays.copyOf(strings, (int) capacity);
+        }
+        int ref = stringsLength;
+        int length = bytes.length;
+        while (length >= 0x80) {
+            strings[stringsLength++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        strings[stringsLength++] = (byte) length;
+        System.arraycopy(bytes, 0, strings, stringsLength, bytes.length);
+        stringsLength += bytes.length;
+        return ref;
+    }
+
+    private void releaseString(int ref) {
+        if (ref >= 0) {
+            deadStringBytes += recordBytes(strings, ref);
+        }
+    }
+
+    // Rewrites the arena without the bytes of deleted users and replaced names. Slots keep their numbers.
+    private void compactStringsIfWasteful() {
+        if (deadStringBytes < (1 << 20) || deadStringBytes < stringsLength / 2) {
+            return;
+        }
+        byte[] compacted = new byte[stringsLength - deadStringBytes + 1024];
+        int length = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (idRefs[slot] == FREE) {
+                continue;
+            }
+            int idBytes = recordBytes(strings, idRefs[slot]);
+            System.arraycopy(strings, idRefs[slot], compacted, length, idBytes);
+            idRefs[slot] = length;
+            length += idBytes;
+            if (nameRefs[slot] != NO_STRING) {
+                int nameBytes = recordBytes(strings, nameRefs[slot]);
+                System.arraycopy(strings, nameRefs[slot], compacted, length, nameBytes);
+                nameRefs[slot] = length;
+                length += nameBytes;
+            }
+        }
+        strings = compacted;
+        stringsLength = length;
+        deadStringBytes = 0;
+    }
+
+    private String readString(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        int length = stringLength(strings, ref);
+        return new String(strings, ref + varintBytes(length), length, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int ref, byte[] bytes) {
+        int length = stringLength(strings, ref);
+        int start = ref + varintBytes(length);
+        return length == bytes.length && Arrays.equals(strings, start, start + length, bytes, 0, length);
+    }
+
+    private static int stringLength(byte[] arena, int ref) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = arena[ref++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    private static int recordBytes(byte[] arena, int ref) {
+        int length = stringLength(arena, ref);
+        return varintBytes(length) + length;
+    }
+
+    private static int varintBytes(int value) {
+        int bytes = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static int hash(byte[] bytes, int from, int length) {
+        int hash = 1;
+        for (int i = from; i < from + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ---- leaderboard order ----
+
+    // Callers hold at least the read lock. Concurrent readers may both sort; either result is correct.
+    private int[] sortedLocked() {
+        SortedView view = sortedView;
+        if (view != null && view.version == version) {
+            return view.slots;
+        }
+        int[] slots = liveSlots();
+        mergeSort(slots, new int[slots.length], 0, slots.length);
+        sortedView = new SortedView(version, slots);
+        return slots;
+    }
+
+    // Unsorted requests get slot order, like MongoDB's natural order; anything else must be the leaderboard order.
+    private int[] orderFor(Sort sort) {
+        if (sort.isUnsorted()) {
+            return liveSlots();
+        }
+        List<Sort.Order> orders = sort.toList();
+        boolean leaderboard = orders.get(0).getProperty().equals("score") && orders.get(0).isAscending()
+                && (orders.size() == 1 || orders.size() == 2 && orders.get(1).getProperty().equals("userId") && orders.get(1).isAscending());
+        if (!leaderboard) {
+            throw new UnsupportedOperationException("The in-memory repository only sorts by score, then userId, ascending: " + sort);
+        }
+        return sortedLocked();
+    }
+
+    private void mergeSort(int[] slots, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(slots, buffer, from, mid);
+        mergeSort(slots, buffer, mid, to);
+        if (compareSlots(slots[mid - 1], slots[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(slots, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < mid && compareSlots(buffer[left], buffer[right]) <= 0) {
+                slots[i] = buffer[left++];
+            } else {
+                slots[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compareSlots(int a, int b) {
+        int byScore = Integer.compare(scores[a], scores[b]);
+        if (byScore != 0) {
+            return byScore;
+        }
+        int aLength = stringLength(strings, idRefs[a]);
+        int bLength = stringLength(strings, idRefs[b]);
+        int aStart = idRefs[a] + varintBytes(aLength);
+        int bStart = idRefs[b] + varintBytes(bLength);
+        return Arrays.compareUnsigned(strings, aStart, aStart + aLength, strings, bStart, bStart + bLength);
+    }
+
+    private int compareToKey(int slot, int score, byte[] userId) {
+        int byScore = Integer.compare(scores[slot], score);
+        if (byScore != 0) {
+            return byScore;
+        }
+        int length = stringLength(strings, idRefs[slot]);
+        int start = idRefs[slot] + varintBytes(length);
+        return Arrays.compareUnsigned(strings, start, start + length, userId, 0, userId.length);
+    }
+
+    // Callers hold at least the read lock. Slots freed since the order was taken are skipped.
+    private <T> List<T> toList(int[] order, long offset, int limit, IntFunction<T> mapper) {
+        if (offset >= order.length || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int end = (int) Math.min(order.length, offset + limit);
+        List<T> result = new ArrayList<>(end - (int) offset);
+        for (int i = (int) offset; i < end; i++) {
+            if (idRefs[order[i]] != FREE) {
+                result.add(mapper.apply(order[i]));
+            }
+        }
+        return result;
+    }
+
+    private <T> Slice<T> toSlice(int[] order, long offset, Pageable pageable, IntFunction<T> mapper) {
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(toList(order, offset, Integer.MAX_VALUE, mapper), pageable, false);
+        }
+        List<T> content = toList(order, offset, pageable.getPageSize(), mapper);
+        return new SliceImpl<>(content, pageable, offset + pageable.getPageSize() < order.length);
+    }
+
+    private static long offset(Pageable pageable) {
+        return pageable.isPaged() ? pageable.getOffset() : 0;
+    }
+
+    // ---- locking helpers ----
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static String requireId(User user) {
+        Assert.notNull(user, "Entity must not be null");
+        // MongoDB would generate an ObjectId; users here always bring their own ID.
+        Assert.notNull(user.getUserId(), "The in-memory repository requires a userId");
+        return user.getUserId();
+    }
+
+    private static DuplicateKeyException duplicateKey(String userId) {
+        return new DuplicateKeyException("E11000 duplicate key error collection: users index: _id_ dup key: { _id: \"" + userId + "\" }");
+    }
+
+    private static UnsupportedOperationException queryByExample() {
+        return new UnsupportedOperationException("Query by example is not supported by the in-memory repository");
+    }
+
+    // The leaderboard order as of one version of the store.
+    private static final class SortedView {
+        private final long version;
+        private final int[] slots;
+
+        private SortedView(long version, int[] slots) {
+            this.version = version;
+            this.slots = slots;
+        }
+    }
+
+    // Plain LeaderboardRow for projections; Spring Data would return a proxy over the document instead.
+    private static final class Row implements LeaderboardRow {
+        private final String userId;
+        private final String username;
+        private final int score;
+        private final int badgeMask;
+
+        private Row(String userId, String username, int score, int badgeMask) {
+            this.userId = userId;
+            this.username = username;
+            this.score = score;
+            this.badgeMask = badgeMask;
+        }
+
+        @Override
+        public String getUserId() {
+            return userId;
+        }
+
+        @Override
+        public String getUsername() {
+            return username;
+        }
+
+        @Override
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public int getBadgeMask() {
+            return badgeMask;
+        }
+    }
+}
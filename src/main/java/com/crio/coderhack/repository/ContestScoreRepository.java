@@ -0,0 +1,28 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.ContestScore;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+// Spring Data repository for per-contest scores. Every query is scoped by contestId and
+// served by one of the contest-prefixed indexes declared on ContestScore.
+@Repository
+public interface ContestScoreRepository extends MongoRepository<ContestScore, String>, ContestScoreRepositoryCustom {
+
+    // Served by the unique contestId_userId index.
+    Optional<ContestScore> findByContestIdAndUserId(String contestId, String userId);
+
+    // A contest's full leaderboard, read in order from the contestId_score_userId index.
+    List<ContestScore> findByContestIdOrderByScoreAscUserIdAsc(String contestId);
+
+    // Offset-based contest leaderboard page. Sort the Pageable by score, then userId.
+    Slice<ContestScore> findByContestId(String contestId, Pageable pageable);
+
+    // Removes a user from every contest; served by the userId index.
+    long deleteByUserId(String userId);
+}
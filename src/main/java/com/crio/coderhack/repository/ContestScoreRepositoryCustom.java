@@ -0,0 +1,23 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.ContestScore;
+
+import java.util.Set;
+
+// Custom repository fragment for the contest score upsert; implemented in ContestScoreRepositoryImpl.
+public interface ContestScoreRepositoryCustom {
+
+    /**
+     * Atomically creates or updates a user's entry in a contest in one findAndModify round trip:
+     * the score is replaced and the badges are OR-ed into the entry's badge mask.
+     *
+     * @param contestId The ID of the contest.
+     * @param userId    The ID of the user.
+     * @param username  The user's name, stored only when the entry is created.
+     * @param score     The new contest score.
+     * @param badges    The badges earned with the new score.
+     * @return The entry as stored after the update.
+     */
+    ContestScore upsertScore(String contestId, String userId, String username, int score, Set<Badge> badges);
+}
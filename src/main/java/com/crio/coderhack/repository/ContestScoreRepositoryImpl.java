@@ -0,0 +1,34 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.ContestScore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Set;
+
+// Implementation of ContestScoreRepositoryCustom on top of MongoTemplate.
+public class ContestScoreRepositoryImpl implements ContestScoreRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    // Constructor injection for MongoTemplate
+    @Autowired
+    public ContestScoreRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public ContestScore upsertScore(String contestId, String userId, String username, int score, Set<Badge> badges) {
+        // The equality match on the unique (contestId, userId) index lets the server retry
+        // a concurrent first upsert that loses the insert race instead of failing it.
+        Query query = Query.query(Criteria.where("contestId").is(contestId).and("userId").is(userId));
+        Update update = UserRepositoryImpl.scoreUpdate(score, badges).setOnInsert("username", username);
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), ContestScore.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertCallback;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lazy migration of user documents from the old "badges" array of names to the "badgeMask" int.
+// Every User that MongoTemplate reads passes through onAfterConvert. If the document still has the
+// array, its badges are OR-ed into the user's mask, so callers always see every badge, and the user is
+// queued. A scheduled flush rewrites queued documents with one unordered bulkWrite: $bit or the mask
+// and $unset the array, only where the array still exists, so each document is migrated once.
+// Score updates only ever touch badgeMask, so a document that is not migrated yet is still read correctly.
+// LeaderboardIndex reads every user at startup, so the collection is migrated shortly after the first start.
+@Component
+@Profile("!inmemory")
+public class LegacyBadgeMigration implements AfterConvertCallback<User> {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyBadgeMigration.class);
+
+    private static final String LEGACY_FIELD = "badges";
+    private static final int BATCH_SIZE = 1000;
+
+    // Looked up on first use: MongoTemplate's converter collects the entity callbacks, including this one.
+    private final ObjectProvider<MongoTemplate> mongoTemplate;
+    // userId -> mask of the badges found in the legacy array.
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+    // Constructor injection for MongoTemplate, used to write the migrated documents
+    @Autowired
+    public LegacyBadgeMigration(ObjectProvider<MongoTemplate> mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public User onAfterConvert(User user, Document document, String collection) {
+        Object legacy = document.get(LEGACY_FIELD);
+        if (legacy == null) {
+            return user;
+        }
+        int mask = 0;
+        if (legacy instanceof List) {
+            for (Object name : (List<?>) legacy) {
+                try {
+                    mask |= Badge.valueOf(String.valueOf(name)).bit();
+                } catch (IllegalArgumentException e) {
+                    log.warn("Ignoring unknown badge {} of user {}", name, user.getUserId());
+                }
+            }
+        }
+        user.setBadgeMask(user.getBadgeMask() | mask);
+        pending.merge(user.getUserId(), mask, (previous, next) -> previous | next);
+        return user;
+    }
+
+    /**
+     * @return The number of users read in the legacy format and not rewritten yet.
+     */
+    public int backlog() {
+        return pending.size();
+    }
+
+    /**
+     * Rewrites the queued documents in the new format. Failed batches are queued again and retried.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Integer>> batch = new ArrayList<>(BATCH_SIZE);
+        Iterator<String> userIds = pending.keySet().iterator();
+        while (userIds.hasNext()) {
+            String userId = userIds.next();
+            Integer mask = pending.remove(userId);
+            if (mask != null) {
+                batch.add(Map.entry(userId, mask));
+            }
+            // Stop at the first failure; the requeued users would otherwise be retried within this flush.
+            if ((batch.size() == BATCH_SIZE || !userIds.hasNext()) && !write(batch)) {
+                return;
+            }
+        }
+    }
+
+    // Writes and clears the batch. On failure the batch goes back into the queue and false is returned.
+    private boolean write(List<Map.Entry<String, Integer>> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        BulkOperations bulk = mongoTemplate.getObject().bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        for (Map.Entry<String, Integer> entry : batch) {
+            Query query = Query.query(Criteria.where("userId").is(entry.getKey()).and(LEGACY_FIELD).exists(true));
+            Update update = Update.fromDocument(new Document("$bit", new Document("badgeMask", new Document("or", entry.getValue())))
+                    .append("$unset", new Document(LEGACY_FIELD, "")));
+            bulk.updateOne(query, update);
+        }
+        try {
+            int migrated = bulk.execute().getModifiedCount();
+            log.debug("Migrated {} user documents to badgeMask", migrated);
+            batch.clear();
+            return true;
+        } catch (RuntimeException e) {
+            batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), (previous, next) -> previous | next));
+            log.warn("Could not migrate {} user documents to badgeMask, will retry", batch.size(), e);
+            return false;
+        }
+    }
+}
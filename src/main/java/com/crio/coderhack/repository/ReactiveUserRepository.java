@@ -0,0 +1,19 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.User;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking counterpart of UserRepository, used by the "reactive" profile.
+// It extends ReactiveMongoRepository, so every query returns a Mono or Flux instead of blocking a thread.
+@Repository
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, String>, ReactiveUserRepositoryCustom {
+
+    // Emits every user sorted by score, then userId, as documents arrive from the cursor.
+    Flux<User> findAllByOrderByScoreAscUserIdAsc();
+
+    // Counts the users ranked above the given score.
+    Mono<Long> countByScoreGreaterThan(int score);
+}
@@ -0,0 +1,21 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+// Custom fragment of ReactiveUserRepository; mirrors UserRepositoryCustom with non-blocking return types.
+public interface ReactiveUserRepositoryCustom {
+
+    /**
+     * Atomically sets a user's score and adds badges in a single findAndModify round trip.
+     *
+     * @param userId The ID of the user to update.
+     * @param score  The new score.
+     * @param badges The badges earned with the new score.
+     * @return The updated User, or an empty Mono if no user has the given ID.
+     */
+    Mono<User> updateScoreAndAddBadges(String userId, int score, Set<Badge> badges);
+}
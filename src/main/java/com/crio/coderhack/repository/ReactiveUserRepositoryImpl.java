@@ -0,0 +1,32 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+// Implementation of ReactiveUserRepositoryCustom on top of ReactiveMongoTemplate.
+public class ReactiveUserRepositoryImpl implements ReactiveUserRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    // Constructor injection for ReactiveMongoTemplate
+    @Autowired
+    public ReactiveUserRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<User> updateScoreAndAddBadges(String userId, int score, Set<Badge> badges) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        // Same $set/$bit update as the blocking repository.
+        return reactiveMongoTemplate.findAndModify(query, UserRepositoryImpl.versionedScoreUpdate(score, badges),
+                FindAndModifyOptions.options().returnNew(true), User.class);
+    }
+}
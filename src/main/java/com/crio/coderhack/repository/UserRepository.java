@@ -2,18 +2,46 @@ package com.crio.coderhack.repository;
 
 
 
+import com.crio.coderhack.dto.LeaderboardRow;
 import com.crio.coderhack.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 // @Repository marks this interface as a Spring Data repository.
-// It extends MongoRepository, providing CRUD operations for User entities with String ID.
+// It extends MongoRepository, providing CRUD operations for User entities with String ID,
+// and UserRepositoryCustom for atomic updates implemented with MongoTemplate.
 @Repository
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustom {
 
     // Spring Data automatically generates the implementation for this method.
     // It will find all users and sort them by score in ascending order.
+    // The sort is served by the score_userId index declared on User.
     List<User> findAllByOrderByScoreAsc();
+
+    // Counts the users ranked above the given score; used for rank lookups when the
+    // in-memory leaderboard index is not available. Answered from the score_userId index alone.
+    long countByScoreGreaterThan(int score);
+
+    // Counts the users whose badge mask has every given bit set; used for badge counts when the
+    // in-memory leaderboard index is not available.
+    @Query(value = "{ 'badgeMask': { '$bitsAllSet': ?0 } }", count = true)
+    long countByBadgeMaskBitsAllSet(int bits);
+
+    // Offset-based leaderboard page. A Slice only fetches limit + 1 documents and skips the count query.
+    Slice<User> findAllBy(Pageable pageable);
+
+    // Keyset-based leaderboard page: every user sorted after (score, userId), so deep pages
+    // do not pay for skipping over the earlier ones.
+    @Query("{ '$or': [ { 'score': { '$gt': ?0 } }, { 'score': ?0, '_id': { '$gt': ?1 } } ] }")
+    Slice<User> findAllAfter(int score, String userId, Pageable pageable);
+
+    // Streams the whole leaderboard from a Mongo cursor in index order, returning only the leaderboard
+    // fields of each user; backs the GET /users?stream=true export. The caller must close the stream.
+    Stream<LeaderboardRow> streamRowsByOrderByScoreAscUserIdAsc();
 }
@@ -0,0 +1,47 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// Custom repository fragment for write operations that Spring Data cannot derive from method names.
+// The implementation lives in UserRepositoryImpl and is picked up by UserRepository automatically.
+public interface UserRepositoryCustom {
+
+    /**
+     * Atomically sets a user's score and adds badges in a single findAndModify round trip.
+     * Badges already on the document are kept (a bitwise or on the badge mask), so concurrent updates
+     * never drop each other's badges.
+     *
+     * @param userId The ID of the user to update.
+     * @param score  The new score.
+     * @param badges The badges earned with the new score.
+     * @return The updated User, or empty if no user has the given ID.
+     */
+    Optional<User> updateScoreAndAddBadges(String userId, int score, Set<Badge> badges);
+
+    /**
+     * Applies many score changes with one unordered bulkWrite of updateOne operations,
+     * using the same $set/$bit update as {@link #updateScoreAndAddBadges}.
+     * Each change must target a different user.
+     *
+     * @param changes The score changes to apply.
+     * @return The user IDs that did not match any document.
+     */
+    Set<String> bulkUpdateScores(Collection<ScoreChange> changes);
+
+    /**
+     * Inserts new users with one unordered bulk insert. Duplicate IDs are reported from the
+     * insert's duplicate-key errors instead of being checked with a query beforehand.
+     *
+     * @param users The users to insert.
+     * @return Positions in the list whose user was not inserted because its ID already existed
+     * or appeared earlier in the list.
+     */
+    Set<Integer> insertNewUsers(List<User> users);
+}
@@ -0,0 +1,108 @@
+package com.crio.coderhack.repository;
+
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Implementation of UserRepositoryCustom on top of MongoTemplate.
+// The "Impl" suffix is how Spring Data finds it; it is not a component on its own.
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    // Constructor injection for MongoTemplate
+    @Autowired
+    public UserRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<User> updateScoreAndAddBadges(String userId, int score, Set<Badge> badges) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        Update update = versionedScoreUpdate(score, badges);
+        User updated = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), User.class);
+        return Optional.ofNullable(updated);
+    }
+
+    @Override
+    public Set<String> bulkUpdateScores(Collection<ScoreChange> changes) {
+        if (changes.isEmpty()) {
+            return Collections.emptySet();
+        }
+        // Unordered, so the server can apply the operations in parallel and one failure does not stop the rest.
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        for (ScoreChange change : changes) {
+            bulk.updateOne(Query.query(Criteria.where("userId").is(change.getUserId())),
+                    versionedScoreUpdate(change.getScore(), change.getBadges()));
+        }
+        BulkWriteResult result = bulk.execute();
+        if (result.getMatchedCount() == changes.size()) {
+            return Collections.emptySet();
+        }
+
+        // Some updates matched nothing; one extra query over the batch's IDs tells which ones.
+        Set<String> missing = changes.stream().map(ScoreChange::getUserId).collect(Collectors.toCollection(HashSet::new));
+        Query existing = Query.query(Criteria.where("userId").in(missing));
+        List<String> found = mongoTemplate.findDistinct(existing, "userId", User.class, String.class);
+        found.forEach(missing::remove);
+        return missing;
+    }
+
+    @Override
+    public Set<Integer> insertNewUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return Collections.emptySet();
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class).insert(users).execute();
+            return Collections.emptySet();
+        } catch (BulkOperationException e) {
+            // Unordered: every other document was still inserted, so only the failed ones need reporting.
+            Set<Integer> duplicates = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex());
+            }
+            return duplicates;
+        }
+    }
+
+    // $set for the score plus $bit or for the badge mask, so earned badges are never removed.
+    // Written as a raw document because Update.bitwise only takes a long, which would turn the stored int into an int64.
+    static Update scoreUpdate(int score, Set<Badge> badges) {
+        Document update = new Document("$set", new Document("score", score));
+        int mask = Badge.toMask(badges);
+        if (mask != 0) {
+            update.append("$bit", new Document("badgeMask", new Document("or", mask)));
+        }
+        return Update.fromDocument(update);
+    }
+
+    // scoreUpdate for a user document: also increments its version in the same write, so whoever applies
+    // the returned document in memory can drop it when a newer one got there first.
+    static Update versionedScoreUpdate(int score, Set<Badge> badges) {
+        return scoreUpdate(score, badges).inc("version", 1L);
+    }
+}
@@ -0,0 +1,126 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.ContestLeaderboardPage;
+import com.crio.coderhack.entity.ContestScore;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.repository.ContestScoreRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+// Per-contest scores and leaderboards, stored in "contest_scores" (see ContestScore).
+// A user takes part in a contest with their first contest score update; badges are awarded per
+// contest with the same thresholds as the global score. Contest reads go straight to MongoDB:
+// each one is a range scan over a single contest's part of the contestId-prefixed indexes.
+// Not available in the "inmemory" profile, which has no MongoDB.
+@Service
+@Profile("!inmemory")
+public class ContestService {
+
+    private static final Logger log = LoggerFactory.getLogger(ContestService.class);
+
+    private static final Sort CONTEST_SORT = Sort.by(Sort.Order.asc("score"), Sort.Order.asc("userId"));
+
+    private final ContestScoreRepository contestScoreRepository;
+    private final UserService userService;
+
+    // Constructor injection for the contest score repository and UserService, which checks that users exist
+    @Autowired
+    public ContestService(ContestScoreRepository contestScoreRepository, UserService userService) {
+        this.contestScoreRepository = contestScoreRepository;
+        this.userService = userService;
+    }
+
+    /**
+     * Sets a user's score in a contest, adding the user to the contest on the first update,
+     * and awards the contest badges for the new score.
+     *
+     * @param contestId The ID of the contest.
+     * @param userId    The ID of a registered user.
+     * @param score     The new contest score (0-100).
+     * @return The user's contest entry after the update.
+     * @throws ResponseStatusException if the user is not found (HTTP 404 Not Found)
+     * or the score is invalid (HTTP 400 Bad Request).
+     */
+    public ContestScore updateScore(String contestId, String userId, int score) {
+        if (score < 0 || score > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Score must be between 0 and 100.");
+        }
+        User user = userService.getUserById(userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + userId + " not found."));
+        return contestScoreRepository.upsertScore(contestId, userId, user.getUsername(), score,
+                UserService.badgesForScore(score));
+    }
+
+    /**
+     * @param contestId The ID of the contest.
+     * @param userId    The ID of the user.
+     * @return The user's entry in the contest.
+     * @throws ResponseStatusException if the user has no score in the contest (HTTP 404 Not Found).
+     */
+    public ContestScore getScore(String contestId, String userId) {
+        return contestScoreRepository.findByContestIdAndUserId(contestId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "User with ID " + userId + " has no score in contest " + contestId + "."));
+    }
+
+    /**
+     * Retrieves a contest's leaderboard, sorted by contest score ascending, ties broken by userId.
+     *
+     * @param contestId The ID of the contest.
+     * @return Every entry of the contest; empty for an unknown contest.
+     */
+    public List<ContestScore> getLeaderboard(String contestId) {
+        return contestScoreRepository.findByContestIdOrderByScoreAscUserIdAsc(contestId);
+    }
+
+    /**
+     * Retrieves one page of a contest's leaderboard.
+     *
+     * @param contestId The ID of the contest.
+     * @param page      Zero-based page number.
+     * @param limit     Page size (1-{@value UserService#MAX_PAGE_SIZE}).
+     * @return The requested page.
+     * @throws ResponseStatusException if page or limit are out of range (HTTP 400 Bad Request).
+     */
+    public ContestLeaderboardPage getLeaderboardPage(String contestId, int page, int limit) {
+        if (limit < 1 || limit > UserService.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + UserService.MAX_PAGE_SIZE + ".");
+        }
+        if (page < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative.");
+        }
+        Slice<ContestScore> slice = contestScoreRepository.findByContestId(contestId, PageRequest.of(page, limit, CONTEST_SORT));
+        return new ContestLeaderboardPage(contestId, slice.getContent(), page, limit, slice.hasNext());
+    }
+
+    /**
+     * Removes a deleted user from every contest. The delete is idempotent, so it is harmless when
+     * several instances see the same deletion (see UserChangeStreamListener).
+     *
+     * @param event The user change; only deletions are handled.
+     */
+    @EventListener
+    public void onUserChange(UserChangeEvent event) {
+        if (event.getType() != UserChangeEvent.Type.DELETE) {
+            return;
+        }
+        try {
+            contestScoreRepository.deleteByUserId(event.getUserId());
+        } catch (RuntimeException e) {
+            log.warn("Could not remove contest scores of deleted user {}", event.getUserId(), e);
+        }
+    }
+}
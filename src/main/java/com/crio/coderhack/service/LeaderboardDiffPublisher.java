@@ -0,0 +1,207 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.LeaderboardChange;
+import com.crio.coderhack.dto.LeaderboardDiff;
+import com.crio.coderhack.dto.UserRank;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Collects user changes and pushes them to live leaderboard subscribers in time-windowed batches.
+// Changes are coalesced per user while a window is open, so a burst of writes to the same user
+// becomes one entry, and a burst across many users becomes one message per window.
+// The window is closed on the shared scheduler thread, but diffs are delivered on push threads: each
+// subscriber has a queue of at most push-queue-size diffs and at most one push thread sending from it,
+// so a slow or stalled client only holds up its own diffs. When a subscriber's queue is full its oldest
+// diff is dropped; the client sees the gap in the event IDs and re-fetches the leaderboard.
+@Component
+public class LeaderboardDiffPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardDiffPublisher.class);
+
+    private final LeaderboardIndex leaderboardIndex;
+    // userId -> latest change in the current window; later changes replace earlier ones.
+    private final Map<String, UserChangeEvent> pending = new ConcurrentHashMap<>();
+    private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    private final Executor pushExecutor;
+    private final int queueSize;
+
+    // Constructor injection for the leaderboard index, used to attach current ranks, and the queue size.
+    // Push threads are created on demand, at most one per subscriber with diffs waiting, and are
+    // reused while subscribers keep receiving.
+    @Autowired
+    public LeaderboardDiffPublisher(LeaderboardIndex leaderboardIndex,
+                                    @Value("${coderhack.leaderboard.push-queue-size:16}") int queueSize) {
+        this(leaderboardIndex, Executors.newCachedThreadPool(pushThreads()), queueSize);
+    }
+
+    public LeaderboardDiffPublisher(LeaderboardIndex leaderboardIndex, Executor pushExecutor, int queueSize) {
+        this.leaderboardIndex = leaderboardIndex;
+        this.pushExecutor = pushExecutor;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Registers a subscriber for future diffs.
+     *
+     * @param subscriber Called once per non-empty window, in order, on a push thread. It may block, which
+     *                   only delays its own diffs; if it throws it is removed.
+     * @return A handle that removes the subscriber.
+     */
+    public Runnable subscribe(Consumer<LeaderboardDiff> subscriber) {
+        Subscription subscription = new Subscription(subscriber, queueSize);
+        subscribers.add(subscription);
+        return subscription::cancel;
+    }
+
+    @EventListener
+    public void onUserChange(UserChangeEvent event) {
+        // No subscribers means nobody would see the diff, so do not accumulate it.
+        if (!subscribers.isEmpty()) {
+            pending.put(event.getUserId(), event);
+        }
+    }
+
+    /**
+     * Closes the current window and queues its coalesced changes for every subscriber.
+     * Runs every coderhack.leaderboard.push-window-ms milliseconds (default 500).
+     */
+    @Scheduled(fixedDelayString = "${coderhack.leaderboard.push-window-ms:500}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<LeaderboardChange> changes = new ArrayList<>(pending.size());
+        Iterator<String> userIds = pending.keySet().iterator();
+        while (userIds.hasNext()) {
+            String userId = userIds.next();
+            // remove() returns the newest change even if it was replaced after iteration started.
+            UserChangeEvent event = pending.remove(userId);
+            if (event != null) {
+                changes.add(toChange(event));
+            }
+        }
+        LeaderboardDiff diff = new LeaderboardDiff(version.incrementAndGet(), changes);
+        for (Subscription subscription : subscribers) {
+            subscription.offer(diff);
+        }
+    }
+
+    /**
+     * Stops the push threads; diffs still queued are not sent.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (pushExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private LeaderboardChange toChange(UserChangeEvent event) {
+        if (event.getType() == UserChangeEvent.Type.DELETE) {
+            return new LeaderboardChange(event.getUserId(), null, null, null, null, true);
+        }
+        User user = event.getUser();
+        Long rank = null;
+        if (leaderboardIndex.isLoaded()) {
+            Optional<UserRank> userRank = leaderboardIndex.rank(user.getUserId());
+            rank = userRank.map(UserRank::getRank).orElse(null);
+        }
+        return new LeaderboardChange(user.getUserId(), user.getUsername(), user.getScore(), user.getBadges(), rank, false);
+    }
+
+    private static ThreadFactory pushThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "leaderboard-push-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // One subscriber's pending diffs. "draining" is set while a push thread owns the queue, so diffs
+    // are sent one at a time and in order.
+    private final class Subscription {
+        private final Consumer<LeaderboardDiff> subscriber;
+        private final BlockingQueue<LeaderboardDiff> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        private Subscription(Consumer<LeaderboardDiff> subscriber, int queueSize) {
+            this.subscriber = subscriber;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        private void offer(LeaderboardDiff diff) {
+            // Full: the client is behind, drop its oldest diff to make room.
+            while (!queue.offer(diff)) {
+                queue.poll();
+            }
+            scheduleDrain();
+        }
+
+        private void cancel() {
+            cancelled = true;
+            subscribers.remove(this);
+            queue.clear();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    pushExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down.
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                LeaderboardDiff diff;
+                while (!cancelled && (diff = queue.poll()) != null) {
+                    subscriber.accept(diff);
+                }
+            } catch (RuntimeException e) {
+                log.debug("Dropping leaderboard subscriber after failed push", e);
+                cancel();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // A diff offered after the last poll but before draining was cleared would otherwise wait
+            // for the next window.
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
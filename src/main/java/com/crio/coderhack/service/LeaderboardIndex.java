@@ -0,0 +1,450 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.UserRank;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-process ranked view of the leaderboard, ordered by (score, userId).
+// It is loaded from MongoDB once at startup and then kept current by UserService,
+// so leaderboard reads and rank lookups never need a database round trip.
+// A ScoreHistogram of the same users answers rank, percentile and badge counts without walking the tree.
+// With coderhack.leaderboard.index.enabled=false (the "inmemory" profile, where the repository itself
+// lives in memory) the index is never loaded and ignores updates, and UserService queries the repository.
+@Component
+public class LeaderboardIndex implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardIndex.class);
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // userId -> tree node, so updates and rank lookups can find the current (score, userId) key.
+    private final Map<String, Node> nodesById = new HashMap<>();
+    // Users per score and per badge, updated together with the tree.
+    private final ScoreHistogram histogram = new ScoreHistogram();
+    private Node root;
+    private volatile boolean loaded;
+
+    public LeaderboardIndex(UserRepository userRepository) {
+        this(userRepository, true);
+    }
+
+    // Constructor injection for UserRepository and the switch that turns the index off
+    @Autowired
+    public LeaderboardIndex(UserRepository userRepository,
+                            @Value("${coderhack.leaderboard.index.enabled:true}") boolean enabled) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Loads every user from MongoDB before the web server starts accepting requests.
+     * If the database is unreachable the index stays unloaded and UserService keeps
+     * answering from the repository.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            log.info("Leaderboard index disabled, leaderboard reads are answered by the repository");
+            return;
+        }
+        try {
+            reload(userRepository.findAll());
+        } catch (RuntimeException e) {
+            log.warn("Could not load leaderboard index, falling back to database queries", e);
+        }
+    }
+
+    /**
+     * Replaces the contents of the index with the given users and marks it as loaded.
+     * Does nothing while the index is disabled.
+     *
+     * @param users All registered users.
+     */
+    public void reload(Iterable<User> users) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            root = null;
+            nodesById.clear();
+            histogram.clear();
+            for (User user : users) {
+                insertLocked(copyOf(user));
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Leaderboard index loaded with {} users", size());
+    }
+
+    /**
+     * @return true once the index has been populated and can serve reads.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @param userId The ID of the user.
+     * @return A copy of the indexed user, or empty if the user is not indexed.
+     */
+    public Optional<User> find(String userId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesById.get(userId);
+            return node == null ? Optional.empty() : Optional.of(copyOf(node.user));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts a user, or replaces the indexed copy of an existing user if the given document is newer
+     * (a higher version). Two concurrent updates of the same user may get here in either order, and the
+     * older document must not overwrite the newer one.
+     *
+     * @param user The user as it is now stored in the database.
+     * @return true if the index now holds this document, false if it was disabled or already held a copy
+     *         at least as new.
+     */
+    public boolean upsert(User user) {
+        if (!enabled) {
+            return false;
+        }
+        User copy = copyOf(user);
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesById.get(copy.getUserId());
+            if (existing != null) {
+                if (existing.user.getVersion() >= copy.getVersion()) {
+                    return false;
+                }
+                deleteLocked(existing);
+            }
+            insertLocked(copy);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a score change to an indexed user without a database read: the score is replaced
+     * and the badges are added to the ones already held. Unknown IDs are ignored. The version is
+     * left alone, since nothing has been written yet.
+     *
+     * @param userId The ID of the user.
+     * @param score  The new score.
+     * @param badges The badges earned with the new score.
+     * @return The updated user, or empty if the user is not indexed.
+     */
+    public Optional<User> applyScore(String userId, int score, Set<Badge> badges) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesById.get(userId);
+            if (existing == null) {
+                return Optional.empty();
+            }
+            User updated = copyOf(existing.user);
+            updated.setScore(score);
+            updated.addBadges(badges);
+            deleteLocked(existing);
+            insertLocked(updated);
+            return Optional.of(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a user from the index. Unknown IDs are ignored.
+     *
+     * @param userId The ID of the user to remove.
+     */
+    public void remove(String userId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesById.get(userId);
+            if (existing != null) {
+                deleteLocked(existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of indexed users.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all users sorted by score ascending, ties broken by userId.
+     * The returned users are shared with the index and must not be modified.
+     *
+     * @return The full leaderboard.
+     */
+    public List<User> ascending() {
+        return range(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a window of the ascending leaderboard in O(log n + limit).
+     *
+     * @param offset Number of leading entries to skip.
+     * @param limit  Maximum number of entries to return.
+     * @return The users at positions [offset, offset + limit).
+     */
+    public List<User> range(long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return rangeLocked(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the users sorted strictly after the given (score, userId) key in O(log n + limit).
+     * The key does not need to belong to an indexed user.
+     *
+     * @param score  Score of the last entry the caller has seen.
+     * @param userId User ID of the last entry the caller has seen.
+     * @param limit  Maximum number of entries to return.
+     * @return The next users in ascending order.
+     */
+    public List<User> rangeAfter(int score, String userId, int limit) {
+        lock.readLock().lock();
+        try {
+            return rangeLocked(countUpTo(score, userId), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts of users per score and per badge, for answers that do not need individual users.
+     * Only meaningful while the index is loaded.
+     *
+     * @return The live histogram of the indexed users.
+     */
+    public ScoreHistogram histogram() {
+        return histogram;
+    }
+
+    /**
+     * Computes the competition rank of a user: 1 plus the number of users with a strictly higher score.
+     * Counted from the histogram, so the cost does not grow with the number of users.
+     *
+     * @param userId The ID of the user.
+     * @return The user's score and rank, or empty if the user is not indexed.
+     */
+    public Optional<UserRank> rank(String userId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesById.get(userId);
+            if (node == null) {
+                return Optional.empty();
+            }
+            int total = size(root);
+            long higher = histogram.countAbove(node.user.getScore());
+            return Optional.of(new UserRank(userId, node.user.getScore(), higher + 1, total));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- treap internals; callers must hold the appropriate lock ----
+
+    private void insertLocked(User user) {
+        Node node = new Node(user, ThreadLocalRandom.current().nextInt());
+        root = insert(root, node);
+        nodesById.put(user.getUserId(), node);
+        histogram.add(user.getScore(), user.getBadgeMask());
+    }
+
+    // Removes an indexed user's node from the tree, the ID map and the histogram.
+    private void deleteLocked(Node node) {
+        root = delete(root, node.user.getScore(), node.user.getUserId());
+        nodesById.remove(node.user.getUserId());
+        histogram.remove(node.user.getScore(), node.user.getBadgeMask());
+    }
+
+    private static int compare(int score, String userId, User user) {
+        int byScore = Integer.compare(score, user.getScore());
+        return byScore != 0 ? byScore : userId.compareTo(user.getUserId());
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.user.getScore(), added.user.getUserId(), node.user) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node delete(Node node, int score, String userId) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(score, userId, node.user);
+        if (cmp < 0) {
+            node.left = delete(node.left, score, userId);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, score, userId);
+        } else {
+            return merge(node.left, node.right);
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private List<User> rangeLocked(long offset, int limit) {
+        int total = size(root);
+        if (offset >= total || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<User> result = new ArrayList<>((int) Math.min(limit, total - offset));
+        collect(root, offset, limit, result);
+        return result;
+    }
+
+    // Number of entries whose key is less than or equal to (score, userId).
+    private int countUpTo(int score, String userId) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (compare(score, userId, node.user) >= 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private static void collect(Node node, long offset, int limit, List<User> out) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        int leftSize = size(node.left);
+        if (offset < leftSize) {
+            collect(node.left, offset, limit, out);
+        }
+        if (out.size() < limit && offset <= leftSize) {
+            out.add(node.user);
+        }
+        if (out.size() < limit) {
+            collect(node.right, Math.max(0, offset - leftSize - 1), limit, out);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.getUserId(), user.getUsername());
+        copy.setScore(user.getScore());
+        copy.setBadgeMask(user.getBadgeMask());
+        copy.setVersion(user.getVersion());
+        return copy;
+    }
+
+    private static final class Node {
+        private final User user;
+        private final int priority;
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(User user, int priority) {
+            this.user = user;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.LeaderboardColumns;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+// The full GET /users response, serialized once and reused until the leaderboard changes.
+// Every write through UserService publishes a UserChangeEvent, which bumps the change count here.
+// With a positive coderhack.leaderboard.snapshot-interval (1s by default) a write schedules an
+// asynchronous rebuild at most once per interval and reads keep getting the previous snapshot until
+// it is ready; only the very first read builds one on the request thread.
+// With snapshot-interval=0 the next read after a write rebuilds the snapshot on the request thread,
+// once per change count however many readers race for it, so reads never see stale data.
+// Either way JSON and gzip CPU scale with the write rate, not the read rate.
+// Besides JSON the snapshot can be served as Smile, CBOR or LeaderboardColumns; each of those is
+// encoded (and gzipped) on its first request and then kept with the snapshot, so formats nobody
+// asks for cost nothing.
+// Served by UserController; the reactive stack streams GET /users instead.
+@Component
+@Profile("!reactive")
+public class LeaderboardSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardSnapshot.class);
+
+    // Encodings of the leaderboard that can be served from a snapshot.
+    public enum Format {
+        // The List<User> as JSON, the body of GET /users.
+        JSON,
+        // The same List<User> as Smile, Jackson's binary JSON.
+        SMILE,
+        // The same List<User> as CBOR (RFC 8949).
+        CBOR,
+        // LeaderboardColumns as JSON.
+        COLUMNS
+    }
+
+    private final UserService userService;
+    // The application's ObjectMapper, and copies of its configuration for the binary formats.
+    private final Map<Format, ObjectMapper> objectMappers = new EnumMap<>(Format.class);
+    private final TaskScheduler taskScheduler;
+    private final Duration interval;
+    private final boolean gzip;
+    // Distinguishes ETags across restarts, since the change count starts from zero again.
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    // Held while a snapshot is built. A ReentrantLock rather than a monitor, so a virtual thread that
+    // serializes and gzips the leaderboard, or waits for another one to, does not pin its carrier thread.
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private volatile Snapshot current;
+    private volatile Instant lastBuild = Instant.EPOCH;
+
+    // Constructor injection for the leaderboard source, the application's ObjectMapper and the scheduler used for delayed rebuilds
+    @Autowired
+    public LeaderboardSnapshot(UserService userService, ObjectMapper objectMapper, TaskScheduler taskScheduler,
+                               @Value("${coderhack.leaderboard.snapshot-interval:1s}") Duration interval,
+                               @Value("${coderhack.leaderboard.snapshot-gzip:true}") boolean gzip) {
+        this.userService = userService;
+        objectMappers.put(Format.JSON, objectMapper);
+        objectMappers.put(Format.SMILE, objectMapper.copyWith(new SmileFactory()));
+        objectMappers.put(Format.CBOR, objectMapper.copyWith(new CBORFactory()));
+        objectMappers.put(Format.COLUMNS, objectMapper);
+        this.taskScheduler = taskScheduler;
+        this.interval = interval;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Returns the snapshot to serve. Builds it first if there is none yet, or if it is out of date
+     * and no refresh interval is configured.
+     *
+     * @return The serialized leaderboard with its ETag.
+     */
+    public Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot != null && (snapshot.version == changes.get() || !interval.isZero())) {
+            return snapshot;
+        }
+        buildLock.lock();
+        try {
+            snapshot = current;
+            if (snapshot == null || (snapshot.version != changes.get() && interval.isZero())) {
+                snapshot = rebuild();
+            }
+            return snapshot;
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if snapshots carry a pre-gzipped copy of each body.
+     */
+    public boolean isGzipEnabled() {
+        return gzip;
+    }
+
+    @EventListener
+    public void onUserChange(UserChangeEvent event) {
+        changes.incrementAndGet();
+        if (!interval.isZero()) {
+            Instant due = lastBuild.plus(interval);
+            scheduleRebuild(due.isBefore(Instant.now()) ? Instant.now() : due);
+        }
+    }
+
+    private void scheduleRebuild(Instant due) {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::scheduledRebuild, due);
+        }
+    }
+
+    private void scheduledRebuild() {
+        // Cleared first, so a write during the rebuild schedules the next one.
+        rebuildScheduled.set(false);
+        try {
+            buildLock.lock();
+            try {
+                rebuild();
+            } finally {
+                buildLock.unlock();
+            }
+        } catch (RuntimeException e) {
+            // Try again after an interval rather than waiting for the next write, which may never come.
+            log.warn("Leaderboard snapshot rebuild failed; serving the previous snapshot and retrying in {}", interval, e);
+            scheduleRebuild(Instant.now().plus(interval));
+        }
+    }
+
+    // Caller must hold buildLock. The change count is read before the users, so the snapshot
+    // contains at least every change it is labelled with.
+    private Snapshot rebuild() {
+        long version = changes.get();
+        List<User> users = userService.getAllUsers();
+        Snapshot snapshot = new Snapshot(version, epoch + "-" + version, format -> encode(users, format));
+        // JSON is what almost every client reads, so it is ready before the snapshot is published.
+        snapshot.body(Format.JSON);
+        current = snapshot;
+        lastBuild = Instant.now();
+        return snapshot;
+    }
+
+    private Body encode(List<User> users, Format format) {
+        byte[] bytes;
+        try {
+            Object value = format == Format.COLUMNS ? LeaderboardColumns.of(users) : users;
+            bytes = objectMappers.get(format).writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Body(bytes, gzip ? gzip(bytes) : null);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // A serialized leaderboard. Its users never change; the encodings are added as they are requested.
+    public static final class Snapshot {
+        private final long version;
+        private final String tag;
+        private final Function<Format, Body> encoder;
+        private final Map<Format, Body> bodies = new ConcurrentHashMap<>();
+        // Not computeIfAbsent: it encodes inside the map's bin monitor, which pins a virtual thread.
+        private final ReentrantLock encodeLock = new ReentrantLock();
+
+        private Snapshot(long version, String tag, Function<Format, Body> encoder) {
+            this.version = version;
+            this.tag = tag;
+            this.encoder = encoder;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // Quoted strong ETag of the JSON body, e.g. "lxk2v3a-42".
+        public String getEtag() {
+            return getEtag(Format.JSON);
+        }
+
+        // Quoted strong ETag of one encoding; the other formats get a suffix, e.g. "lxk2v3a-42-smile".
+        public String getEtag(Format format) {
+            return getEtag(format, false);
+        }
+
+        // Quoted strong ETag of one encoding as sent, identity or gzipped; the gzipped body is a different
+        // representation and gets a further suffix, e.g. "lxk2v3a-42-gzip" or "lxk2v3a-42-smile-gzip".
+        public String getEtag(Format format, boolean gzipped) {
+            String formatSuffix = format == Format.JSON ? "" : "-" + format.name().toLowerCase();
+            return "\"" + tag + formatSuffix + (gzipped ? "-gzip" : "") + "\"";
+        }
+
+        public byte[] getJson() {
+            return body(Format.JSON).getBytes();
+        }
+
+        // The JSON compressed with gzip, or null if pre-compression is disabled.
+        public byte[] getGzippedJson() {
+            return body(Format.JSON).getGzipped();
+        }
+
+        // The leaderboard in the given format, encoded on the first call.
+        public Body body(Format format) {
+            Body body = bodies.get(format);
+            if (body != null) {
+                return body;
+            }
+            encodeLock.lock();
+            try {
+                body = bodies.get(format);
+                if (body == null) {
+                    body = encoder.apply(format);
+                    bodies.put(format, body);
+                }
+                return body;
+            } finally {
+                encodeLock.unlock();
+            }
+        }
+    }
+
+    // One encoding of a snapshot. The byte arrays are shared and must not be modified.
+    public static final class Body {
+        private final byte[] bytes;
+        private final byte[] gzipped;
+
+        private Body(byte[] bytes, byte[] gzipped) {
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        // The bytes compressed with gzip, or null if pre-compression is disabled.
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.UserRank;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.repository.ReactiveUserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking version of UserService for the "reactive" profile.
+// It applies the same validation, badge rules and error statuses, but every database call
+// returns a Mono or Flux, so no request thread waits on MongoDB.
+@Service
+@Profile("reactive")
+public class ReactiveUserService {
+
+    private final ReactiveUserRepository userRepository;
+    private final LeaderboardIndex leaderboardIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScoreEventLog scoreEventLog;
+
+    // Constructor injection for ReactiveUserRepository, the in-memory leaderboard index,
+    // the publisher for UserChangeEvents and the score history
+    @Autowired
+    public ReactiveUserService(ReactiveUserRepository userRepository, LeaderboardIndex leaderboardIndex,
+                               ApplicationEventPublisher eventPublisher, ScoreEventLog scoreEventLog) {
+        this.userRepository = userRepository;
+        this.leaderboardIndex = leaderboardIndex;
+        this.eventPublisher = eventPublisher;
+        this.scoreEventLog = scoreEventLog;
+    }
+
+    /**
+     * Registers a new user with default score and empty badges.
+     *
+     * @param userId   The unique ID for the user.
+     * @param username The username.
+     * @return The newly created User, or an error with HTTP 409 Conflict if the ID already exists.
+     */
+    public Mono<User> registerUser(String userId, String username) {
+        return userRepository.insert(new User(userId, username))
+                .onErrorMap(DuplicateKeyException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONFLICT, "User with ID " + userId + " already exists."))
+                .doOnNext(this::onUpserted);
+    }
+
+    /**
+     * Retrieves a user by their ID.
+     *
+     * @param userId The ID of the user to retrieve.
+     * @return The User, or an empty Mono if not found.
+     */
+    public Mono<User> getUserById(String userId) {
+        return userRepository.findById(userId);
+    }
+
+    /**
+     * Updates the score of an existing user and awards badges, in one atomic findAndModify.
+     *
+     * @param userId   The ID of the user to update.
+     * @param newScore The new score for the user (0-100).
+     * @return The updated User, or an error with HTTP 404 Not Found or HTTP 400 Bad Request.
+     */
+    public Mono<User> updateScore(String userId, int newScore) {
+        // Validation: Score must be between 0 and 100
+        if (newScore < 0 || newScore > 100) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Score must be between 0 and 100."));
+        }
+        return Mono.defer(() -> {
+            // The badges held before the change, so the score history can tell which ones it awarded.
+            int previousBadgeMask = leaderboardIndex.find(userId).map(User::getBadgeMask).orElse(0);
+            return userRepository.updateScoreAndAddBadges(userId, newScore, UserService.badgesForScore(newScore))
+                    .switchIfEmpty(Mono.error(() -> notFound(userId)))
+                    .doOnNext(this::onUpserted)
+                    .doOnNext(user -> scoreEventLog.record(userId, newScore, previousBadgeMask, user.getBadgeMask()));
+        });
+    }
+
+    /**
+     * Deletes a user by their ID.
+     *
+     * @param userId The ID of the user to delete.
+     * @return Completes when deleted, or an error with HTTP 404 Not Found.
+     */
+    public Mono<Void> deleteUser(String userId) {
+        return userRepository.existsById(userId)
+                .flatMap(exists -> exists
+                        ? userRepository.deleteById(userId).then(Mono.fromRunnable(() -> onDeleted(userId)))
+                        : Mono.error(notFound(userId)))
+                .then();
+    }
+
+    /**
+     * Emits all registered users sorted by score in ascending order.
+     * Served from the in-memory leaderboard index once it is loaded, otherwise streamed from a database cursor.
+     *
+     * @return A Flux of all users.
+     */
+    public Flux<User> getAllUsers() {
+        if (leaderboardIndex.isLoaded()) {
+            return Flux.defer(() -> Flux.fromIterable(leaderboardIndex.ascending()));
+        }
+        return userRepository.findAllByOrderByScoreAscUserIdAsc();
+    }
+
+    /**
+     * Looks up the leaderboard rank of a user. Rank 1 is the highest score and tied users share a rank.
+     *
+     * @param userId The ID of the user.
+     * @return The user's score, rank and total user count, or an error with HTTP 404 Not Found.
+     */
+    public Mono<UserRank> getRank(String userId) {
+        if (leaderboardIndex.isLoaded()) {
+            return Mono.defer(() -> Mono.justOrEmpty(leaderboardIndex.rank(userId)))
+                    .switchIfEmpty(Mono.error(() -> notFound(userId)));
+        }
+        return userRepository.findById(userId)
+                .switchIfEmpty(Mono.error(() -> notFound(userId)))
+                .flatMap(user -> Mono.zip(userRepository.countByScoreGreaterThan(user.getScore()), userRepository.count())
+                        .map(counts -> new UserRank(userId, user.getScore(), counts.getT1() + 1, counts.getT2())));
+    }
+
+    private void onUpserted(User user) {
+        leaderboardIndex.upsert(user);
+        eventPublisher.publishEvent(UserChangeEvent.upserted(user));
+    }
+
+    private void onDeleted(String userId) {
+        leaderboardIndex.remove(userId);
+        eventPublisher.publishEvent(UserChangeEvent.deleted(userId));
+    }
+
+    private static ResponseStatusException notFound(String userId) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + userId + " not found.");
+    }
+}
@@ -0,0 +1,307 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.ScoreStats;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.ScoreEvent;
+import com.crio.coderhack.entity.ScoreStatsMinute;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Append-only history of accepted score changes (coderhack.score-events.enabled, on by default).
+// UserService and ReactiveUserService record every change here after it is accepted; recording only
+// enqueues, so the request never waits for the history. The queue is written every flush-interval-ms,
+// or as soon as batch-size events are pending, with one insertMany into the score_events time series.
+// The same flush folds the batch into per-minute aggregates in score_stats (submissions, submitted
+// score ranges, first-time badge awards) with one $inc upsert per minute. GET /stats then reads one
+// document per minute of the window instead of scanning the history.
+//
+// At most max-pending events wait in memory; beyond that events are dropped and counted in
+// coderhack.score_events.dropped. Events still queued when the process dies are lost.
+// The aggregates of a written batch are best effort: if that second write fails they miss the batch.
+// Without MongoDB (the "inmemory" profile) nothing is recorded.
+@Component
+public class ScoreEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreEventLog.class);
+
+    public static final int MAX_HISTORY_LIMIT = 1000;
+    public static final int MAX_STATS_MINUTES = 7 * 24 * 60;
+
+    // Null when there is no MongoDB, which also disables the log.
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final TaskScheduler taskScheduler;
+    private final BlockingQueue<ScoreEvent> pending;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter failedFlushCounter;
+
+    // Constructor injection for the log settings, MongoDB if there is one, the scheduler for
+    // size-triggered flushes and the metrics registry
+    @Autowired
+    public ScoreEventLog(@Value("${coderhack.score-events.enabled:true}") boolean enabled,
+                         @Value("${coderhack.score-events.batch-size:1000}") int batchSize,
+                         @Value("${coderhack.score-events.max-pending:100000}") int maxPending,
+                         ObjectProvider<MongoTemplate> mongoTemplate, TaskScheduler taskScheduler,
+                         MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate.getIfAvailable();
+        this.enabled = enabled && this.mongoTemplate != null;
+        this.batchSize = batchSize;
+        this.taskScheduler = taskScheduler;
+        this.pending = new ArrayBlockingQueue<>(maxPending);
+        Gauge.builder("coderhack.score_events.backlog", pending, BlockingQueue::size)
+                .description("Score events waiting to be written to MongoDB")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("coderhack.score_events.written")
+                .description("Score events appended to the history")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("coderhack.score_events.dropped")
+                .description("Score events dropped because too many were waiting to be written")
+                .register(meterRegistry);
+        this.failedFlushCounter = Counter.builder("coderhack.score_events.flush.failures")
+                .description("Flushes of the score history that failed and were retried")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues an accepted score change for the history and the aggregates.
+     *
+     * @param userId            The ID of the user.
+     * @param score             The new score.
+     * @param previousBadgeMask The user's badge mask before the change.
+     * @param badgeMask         The user's badge mask after the change.
+     */
+    public void record(String userId, int score, int previousBadgeMask, int badgeMask) {
+        if (!enabled) {
+            return;
+        }
+        if (!pending.offer(new ScoreEvent(Instant.now(), userId, score, badgeMask & ~previousBadgeMask))) {
+            droppedCounter.increment();
+            return;
+        }
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+
+    /**
+     * @return The number of events waiting to be written.
+     */
+    public int backlog() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every queued event in batches of batch-size. Stops at the first failed batch,
+     * which is queued again and retried by the next flush.
+     */
+    @Scheduled(fixedDelayString = "${coderhack.score-events.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            List<ScoreEvent> batch = new ArrayList<>(batchSize);
+            while (pending.drainTo(batch, batchSize) > 0) {
+                if (!write(batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Reads a user's score history, newest first, ordered by time and then by event ID.
+     * Times are stored in milliseconds and several events of a user can share one, so a page that
+     * ends inside such a millisecond is resumed with the (time, id) of its last event.
+     *
+     * @param userId   The ID of the user.
+     * @param before   Only events before this time; null for the newest.
+     * @param beforeId Also return events at exactly the before time whose ID sorts before this one;
+     *                 null to skip that millisecond entirely. Ignored without before.
+     * @param limit    Maximum number of events (1-{@value #MAX_HISTORY_LIMIT}).
+     * @return The events, newest first; pass the time and id of the last one as before and beforeId
+     *         to read further back.
+     */
+    public List<ScoreEvent> history(String userId, Instant before, String beforeId, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (before != null && beforeId != null) {
+            criteria = criteria.orOperator(
+                    Criteria.where("time").lt(before),
+                    Criteria.where("time").is(before).and("id").lt(beforeId));
+        } else if (before != null) {
+            criteria = criteria.and("time").lt(before);
+        }
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.DESC, "time", "id")).limit(limit);
+        return mongoTemplate.find(query, ScoreEvent.class);
+    }
+
+    /**
+     * Sums the per-minute aggregates of the last minutes, including the current one.
+     *
+     * @param minutes Length of the window (1-{@value #MAX_STATS_MINUTES}).
+     * @return The totals over the window and the non-empty minutes in it.
+     */
+    public ScoreStats stats(int minutes) {
+        Instant to = Instant.now();
+        Instant from = to.truncatedTo(ChronoUnit.MINUTES).minus(minutes - 1L, ChronoUnit.MINUTES);
+        Query query = Query.query(Criteria.where("minute").gte(from)).with(Sort.by("minute"));
+        List<ScoreStatsMinute> perMinute = mongoTemplate.find(query, ScoreStatsMinute.class);
+        long submissions = 0;
+        Map<String, Long> scores = new TreeMap<>();
+        Map<String, Long> badgeAwards = new TreeMap<>();
+        for (ScoreStatsMinute minute : perMinute) {
+            submissions += minute.getSubmissions();
+            addAll(scores, minute.getScores());
+            addAll(badgeAwards, minute.getBadgeAwards());
+        }
+        return new ScoreStats(from, to, submissions, scores, badgeAwards, perMinute);
+    }
+
+    /**
+     * @param score A score between 0 and 100.
+     * @return The label of the score range it is counted in.
+     */
+    public static String scoreRange(int score) {
+        if (score >= 100) {
+            return "100";
+        }
+        int low = score / 10 * 10;
+        return low + "-" + (low + 9);
+    }
+
+    // Inserts the batch and folds the inserted events into the aggregates. Events that failed to insert
+    // go back into the queue (as far as there is room) and false is returned.
+    private boolean write(List<ScoreEvent> batch) {
+        List<ScoreEvent> inserted = batch;
+        List<ScoreEvent> failed = List.of();
+        try {
+            // Converted by hand to leave out the _class type hint, which would be the largest field of each event.
+            List<Document> documents = new ArrayList<>(batch.size());
+            for (ScoreEvent event : batch) {
+                Document document = new Document();
+                mongoTemplate.getConverter().write(event, document);
+                document.remove("_class");
+                documents.add(document);
+            }
+            mongoTemplate.getCollection(mongoTemplate.getCollectionName(ScoreEvent.class))
+                    .insertMany(documents, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Unordered: every event without a write error was inserted, so only the failed ones are
+            // retried; retrying the rest would write them, and count them in the aggregates, twice.
+            // A write concern error alone leaves every event inserted.
+            Set<Integer> failedIndexes = new HashSet<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failedIndexes.add(error.getIndex());
+            }
+            inserted = new ArrayList<>(batch.size() - failedIndexes.size());
+            failed = new ArrayList<>(failedIndexes.size());
+            for (int i = 0; i < batch.size(); i++) {
+                (failedIndexes.contains(i) ? failed : inserted).add(batch.get(i));
+            }
+            if (!failed.isEmpty()) {
+                requeue(failed, e);
+            }
+        } catch (RuntimeException e) {
+            // No reply, so nothing is known to be inserted and the whole batch is retried. Should the
+            // insert have reached the server after all, its events are written twice.
+            requeue(batch, e);
+            return false;
+        }
+        writtenCounter.increment(inserted.size());
+        if (!inserted.isEmpty()) {
+            try {
+                aggregate(inserted);
+            } catch (RuntimeException e) {
+                log.warn("Could not add {} score events to the per-minute aggregates", inserted.size(), e);
+            }
+        }
+        return failed.isEmpty();
+    }
+
+    private void requeue(List<ScoreEvent> events, RuntimeException cause) {
+        int requeued = 0;
+        for (ScoreEvent event : events) {
+            if (pending.offer(event)) {
+                requeued++;
+            }
+        }
+        droppedCounter.increment(events.size() - requeued);
+        failedFlushCounter.increment();
+        log.warn("Could not write {} score events, will retry", requeued, cause);
+    }
+
+    // One upsert per minute in the batch, incrementing each counter by the batch's total for it.
+    private void aggregate(List<ScoreEvent> batch) {
+        Map<Instant, Map<String, Long>> increments = new TreeMap<>();
+        for (ScoreEvent event : batch) {
+            Map<String, Long> counts = increments.computeIfAbsent(event.getTime().truncatedTo(ChronoUnit.MINUTES),
+                    minute -> new HashMap<>());
+            counts.merge("submissions", 1L, Long::sum);
+            counts.merge("scores." + scoreRange(event.getScore()), 1L, Long::sum);
+            for (Badge badge : event.getAwardedBadges()) {
+                counts.merge("badgeAwards." + badge.name(), 1L, Long::sum);
+            }
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreStatsMinute.class);
+        increments.forEach((minute, counts) -> {
+            Update update = new Update();
+            counts.forEach(update::inc);
+            bulk.upsert(Query.query(Criteria.where("minute").is(minute)), update);
+        });
+        bulk.execute();
+    }
+
+    private static void addAll(Map<String, Long> totals, Map<String, Long> counts) {
+        if (counts != null) {
+            counts.forEach((key, count) -> totals.merge(key, count, Long::sum));
+        }
+    }
+}
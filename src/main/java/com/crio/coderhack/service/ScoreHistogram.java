@@ -0,0 +1,95 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.entity.Badge;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Number of users at each score and holding each badge. Scores are validated to 0-100, so one cell
+// per score covers the whole leaderboard, and "how many users score above S" is a sum over at most
+// 101 cells whatever the number of users. The cells are LongAdders, so concurrent readers never
+// block and never contend with each other.
+// LeaderboardIndex keeps its histogram current under its write lock, so rank lookups under the read
+// lock see a consistent view; lock-free readers may briefly see a user who is moving between two scores
+// counted in neither.
+public final class ScoreHistogram {
+
+    public static final int MAX_SCORE = 100;
+
+    private final LongAdder[] scores = new LongAdder[MAX_SCORE + 1];
+    private final LongAdder[] badges = new LongAdder[Badge.values().length];
+    private final LongAdder users = new LongAdder();
+
+    ScoreHistogram() {
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            scores[score] = new LongAdder();
+        }
+        for (int badge = 0; badge < badges.length; badge++) {
+            badges[badge] = new LongAdder();
+        }
+    }
+
+    void add(int score, int badgeMask) {
+        update(score, badgeMask, 1);
+    }
+
+    void remove(int score, int badgeMask) {
+        update(score, badgeMask, -1);
+    }
+
+    void clear() {
+        for (LongAdder cell : scores) {
+            cell.reset();
+        }
+        for (LongAdder cell : badges) {
+            cell.reset();
+        }
+        users.reset();
+    }
+
+    /**
+     * @return The number of users counted.
+     */
+    public long total() {
+        return users.sum();
+    }
+
+    /**
+     * @param score A score; values outside 0-100 count as the nearest bound.
+     * @return The number of users with a strictly higher score.
+     */
+    public long countAbove(int score) {
+        long count = 0;
+        for (int cell = cell(score) + 1; cell <= MAX_SCORE; cell++) {
+            count += scores[cell].sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of users holding each badge, with every badge present.
+     */
+    public Map<Badge, Long> badgeCounts() {
+        Map<Badge, Long> counts = new EnumMap<>(Badge.class);
+        for (Badge badge : Badge.values()) {
+            counts.put(badge, badges[badge.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    private void update(int score, int badgeMask, int delta) {
+        scores[cell(score)].add(delta);
+        // Bit i of the mask is the badge with ordinal i.
+        for (int badge = 0; badge < badges.length; badge++) {
+            if ((badgeMask & (1 << badge)) != 0) {
+                badges[badge].add(delta);
+            }
+        }
+        users.add(delta);
+    }
+
+    private static int cell(int score) {
+        return Math.max(0, Math.min(MAX_SCORE, score));
+    }
+}
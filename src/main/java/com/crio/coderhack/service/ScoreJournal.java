@@ -0,0 +1,199 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Append-only log of accepted score changes for ScoreWriteBuffer, so buffered updates survive a crash.
+// Records go to numbered segment files (scores-00000000000000000001.log, ...). Before each flush the
+// buffer rotates to a new segment; once the flush is written to MongoDB, the older segments are deleted.
+// Replaying the remaining segments in order rebuilds the changes that never reached the database.
+// Not thread-safe: ScoreWriteBuffer serializes every call.
+class ScoreJournal {
+
+    private static final String PREFIX = "scores-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private long segment;
+    private FileOutputStream output;
+    private BufferedWriter writer;
+
+    /**
+     * @param directory Where the segment files live; created if missing.
+     * @param fsync     Force every record to disk before acknowledging it, instead of only to the OS.
+     */
+    ScoreJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            List<Long> existing = segments();
+            segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads every existing segment in order and merges the records the same way the buffer does:
+     * the last score wins, badges accumulate, and a discard drops everything before it.
+     * Must be called before the first append, which opens a new segment.
+     *
+     * @return The changes that were journaled but not yet flushed.
+     */
+    Collection<ScoreChange> recover() {
+        Map<String, ScoreChange> changes = new LinkedHashMap<>();
+        try {
+            for (long number : segments()) {
+                try (BufferedReader reader = Files.newBufferedReader(file(number), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        try {
+                            readRecord(line, changes);
+                        } catch (RuntimeException e) {
+                            // A record cut short by a crash was never acknowledged, so it is skipped.
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return changes.values();
+    }
+
+    void appendUpdate(ScoreChange change) {
+        String badges = change.getBadges().stream().map(Badge::name).collect(Collectors.joining(","));
+        append("U\t" + encode(change.getUserId()) + "\t" + change.getScore() + "\t" + badges);
+    }
+
+    void appendDiscard(String userId) {
+        append("D\t" + encode(userId));
+    }
+
+    /**
+     * Closes the current segment; the next record starts a new one.
+     *
+     * @return The number of the last segment written so far; pass it to deleteUpTo once its records are flushed.
+     */
+    long rotate() {
+        closeSegment();
+        return segment;
+    }
+
+    /**
+     * Deletes the segments up to and including the given number.
+     */
+    void deleteUpTo(long number) {
+        try {
+            for (long existing : segments()) {
+                if (existing <= number) {
+                    Files.deleteIfExists(file(existing));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void close() {
+        closeSegment();
+    }
+
+    private void append(String record) {
+        try {
+            if (writer == null) {
+                output = new FileOutputStream(file(segment + 1).toFile(), true);
+                writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                segment++;
+            }
+            writer.write(record);
+            writer.write('\n');
+            writer.flush();
+            if (fsync) {
+                output.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeSegment() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer = null;
+            output = null;
+        }
+    }
+
+    private static void readRecord(String line, Map<String, ScoreChange> changes) {
+        String[] fields = line.split("\t", -1);
+        String userId = decode(fields[1]);
+        if (fields[0].equals("D")) {
+            changes.remove(userId);
+            return;
+        }
+        Set<Badge> badges = EnumSet.noneOf(Badge.class);
+        if (!fields[3].isEmpty()) {
+            for (String badge : fields[3].split(",")) {
+                badges.add(Badge.valueOf(badge));
+            }
+        }
+        ScoreChange previous = changes.remove(userId);
+        if (previous != null) {
+            badges.addAll(previous.getBadges());
+        }
+        changes.put(userId, new ScoreChange(userId, Integer.parseInt(fields[2]), badges));
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private Path file(long number) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, number, SUFFIX));
+    }
+
+    // User IDs are free-form, so tabs and newlines must not leak into the record format.
+    private static String encode(String userId) {
+        return URLEncoder.encode(userId, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String userId) {
+        return URLDecoder.decode(userId, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,289 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Optional write-behind mode for PUT /users/{userId} (coderhack.scores.write-behind.enabled=true).
+// UserService validates the score, applies it and its badges to the leaderboard index, and
+// acknowledges the request; the change waits here until it is written to MongoDB. Pending changes
+// are coalesced per user (last score wins, badges accumulate), so a burst of updates to one user
+// costs a single write. The buffer is flushed in unordered bulkWrite batches every
+// flush-interval-ms, as soon as batch-size users are pending, and on shutdown.
+//
+// Durability (coderhack.scores.write-behind.durability):
+//   memory  - acknowledged changes that were not flushed yet are lost if the process dies.
+//   journal - each change is appended to a journal in journal-dir before it is acknowledged
+//             (and fsynced with journal-fsync=true); unflushed changes are replayed at startup.
+//
+// The number of pending users is published as the coderhack.scores.write_behind.backlog gauge.
+@Component
+public class ScoreWriteBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreWriteBuffer.class);
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final UserRepository userRepository;
+    private final TaskScheduler taskScheduler;
+    // Null unless durability=journal. Appends, discards and rotation all happen under journalLock,
+    // together with the matching change to the pending map, so journal order and map state agree.
+    // A ReentrantLock rather than a monitor: the journal is written to disk while it is held, and a
+    // virtual thread blocked in I/O inside synchronized would pin its carrier thread.
+    private final ScoreJournal journal;
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final Map<String, ScoreChange> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Counter flushedCounter;
+    private final Counter failedFlushCounter;
+
+    // Constructor injection for the write-behind settings, the repository the buffer flushes to,
+    // the scheduler for size-triggered flushes, and the metrics registry
+    @Autowired
+    public ScoreWriteBuffer(@Value("${coderhack.scores.write-behind.enabled:false}") boolean enabled,
+                            @Value("${coderhack.scores.write-behind.batch-size:1000}") int batchSize,
+                            @Value("${coderhack.scores.write-behind.durability:memory}") String durability,
+                            @Value("${coderhack.scores.write-behind.journal-dir:data/score-journal}") String journalDir,
+                            @Value("${coderhack.scores.write-behind.journal-fsync:false}") boolean journalFsync,
+                            UserRepository userRepository, TaskScheduler taskScheduler, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.userRepository = userRepository;
+        this.taskScheduler = taskScheduler;
+        this.journal = enabled && durability.equals("journal") ? new ScoreJournal(Path.of(journalDir), journalFsync) : null;
+        Gauge.builder("coderhack.scores.write_behind.backlog", pending, Map::size)
+                .description("Users with a score change waiting to be written to MongoDB")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("coderhack.scores.write_behind.flushed")
+                .description("Coalesced score changes written to MongoDB")
+                .register(meterRegistry);
+        this.failedFlushCounter = Counter.builder("coderhack.scores.write_behind.flush.failures")
+                .description("Flushes that failed and were put back in the buffer")
+                .register(meterRegistry);
+        if (journal != null) {
+            recover();
+        }
+    }
+
+    /**
+     * @return true if score updates should be buffered instead of written synchronously.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers a validated score change. Once this returns the change is durable to the configured level.
+     *
+     * @param userId The ID of the user.
+     * @param score  The new score.
+     * @param badges The badges earned with the new score.
+     */
+    public void submit(String userId, int score, Set<Badge> badges) {
+        Set<Badge> copy = EnumSet.noneOf(Badge.class);
+        copy.addAll(badges);
+        ScoreChange change = new ScoreChange(userId, score, copy);
+        if (journal != null) {
+            journalLock.lock();
+            try {
+                journal.appendUpdate(change);
+                merge(change);
+            } finally {
+                journalLock.unlock();
+            }
+        } else {
+            merge(change);
+        }
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+
+    /**
+     * Drops the pending change of a deleted user, so a later flush cannot apply it to a new user with the same ID.
+     *
+     * @param userId The ID of the deleted user.
+     */
+    public void discard(String userId) {
+        if (journal != null) {
+            journalLock.lock();
+            try {
+                journal.appendDiscard(userId);
+                pending.remove(userId);
+            } finally {
+                journalLock.unlock();
+            }
+        } else {
+            pending.remove(userId);
+        }
+    }
+
+    /**
+     * Applies a user's pending change, if any, to a copy read from the database,
+     * so reads that miss the cache still see acknowledged updates.
+     *
+     * @param user The user as stored in MongoDB.
+     * @return The user as it will be after the next flush.
+     */
+    public User overlay(User user) {
+        ScoreChange change = pending.get(user.getUserId());
+        if (change == null) {
+            return user;
+        }
+        User overlaid = new User(user.getUserId(), user.getUsername());
+        overlaid.setScore(change.getScore());
+        overlaid.setBadgeMask(user.getBadgeMask() | Badge.toMask(change.getBadges()));
+        overlaid.setVersion(user.getVersion());
+        return overlaid;
+    }
+
+    /**
+     * @return The number of users with a pending change.
+     */
+    public int backlog() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every pending change to MongoDB in bulk batches. Runs every flush-interval-ms,
+     * when the backlog reaches batch-size, and on shutdown. If a batch fails, the unwritten
+     * changes go back into the buffer (newer pending changes keep their score) and are retried
+     * on the next flush; their journal segments are kept until then.
+     */
+    @Scheduled(fixedDelayString = "${coderhack.scores.write-behind.flush-interval-ms:100}")
+    public void flush() {
+        flushRequested.set(false);
+        if (!enabled || pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            long flushedSegment = -1;
+            List<ScoreChange> changes;
+            if (journal != null) {
+                journalLock.lock();
+                try {
+                    flushedSegment = journal.rotate();
+                    changes = drain();
+                } finally {
+                    journalLock.unlock();
+                }
+            } else {
+                changes = drain();
+            }
+            for (int start = 0; start < changes.size(); start += batchSize) {
+                List<ScoreChange> batch = changes.subList(start, Math.min(start + batchSize, changes.size()));
+                try {
+                    Set<String> missing = userRepository.bulkUpdateScores(batch);
+                    if (!missing.isEmpty()) {
+                        log.debug("Dropped buffered score changes for {} deleted users", missing.size());
+                    }
+                    flushedCounter.increment(batch.size());
+                } catch (RuntimeException e) {
+                    failedFlushCounter.increment();
+                    requeue(changes.subList(start, changes.size()));
+                    log.warn("Could not flush {} buffered score changes, will retry", changes.size() - start, e);
+                    return;
+                }
+            }
+            if (journal != null) {
+                journal.deleteUpTo(flushedSegment);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes what is left before the application context closes; the web server has already
+     * stopped accepting requests by then.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("{} buffered score changes could not be written to MongoDB{}", pending.size(),
+                    journal != null ? " and will be replayed from the journal on the next start" : " and are lost");
+        }
+        if (journal != null) {
+            journalLock.lock();
+            try {
+                journal.close();
+            } finally {
+                journalLock.unlock();
+            }
+        }
+    }
+
+    // Loads the changes a previous run journaled but never flushed, and tries to write them right away,
+    // before LeaderboardIndex loads the users from MongoDB.
+    private void recover() {
+        Collection<ScoreChange> recovered = journal.recover();
+        if (recovered.isEmpty()) {
+            return;
+        }
+        log.info("Replaying {} buffered score changes from the journal", recovered.size());
+        recovered.forEach(this::merge);
+        flush();
+    }
+
+    // The incoming change is not visible to other threads yet, so its badges can be extended in place.
+    private void merge(ScoreChange change) {
+        pending.merge(change.getUserId(), change, (previous, next) -> {
+            next.getBadges().addAll(previous.getBadges());
+            return next;
+        });
+    }
+
+    // Older changes that failed to flush must not overwrite the score of a newer pending change.
+    private void requeue(List<ScoreChange> changes) {
+        for (ScoreChange change : changes) {
+            pending.merge(change.getUserId(), change, (newer, older) -> {
+                // A new object, since readers may be looking at the badges of the pending one.
+                Set<Badge> badges = EnumSet.noneOf(Badge.class);
+                badges.addAll(newer.getBadges());
+                badges.addAll(older.getBadges());
+                return new ScoreChange(newer.getUserId(), newer.getScore(), badges);
+            });
+        }
+    }
+
+    private List<ScoreChange> drain() {
+        List<ScoreChange> changes = new ArrayList<>(pending.size());
+        Iterator<String> userIds = pending.keySet().iterator();
+        while (userIds.hasNext()) {
+            // remove() returns the newest change even if it was replaced after iteration started.
+            ScoreChange change = pending.remove(userIds.next());
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,142 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded read-through cache for single-user lookups (GET /users/{userId}).
+// Writes go through UserService, which puts the stored document here or evicts it.
+// Unknown IDs are remembered for a short time so repeated 404s do not reach the database.
+// Hit, miss, size and eviction counts are published as cache.* metrics under the names
+// "users" and "users.missing".
+//
+// A read-through fill reads the database first and stores the result later, so a delete, register or
+// update can happen in between and the fill would bring back what it replaced, for the whole TTL.
+// Every put and evict therefore bumps a generation first; a fill takes the generation before its read
+// and undoes its store if the generation has moved since. Generations are striped by userId, so an
+// unrelated write in the same stripe only costs one extra database read.
+@Component
+public class UserCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Cache<String, User> users;
+    private final Cache<String, Boolean> missing;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    // Constructor injection for the cache limits and the metrics registry
+    @Autowired
+    public UserCache(@Value("${coderhack.cache.max-size:100000}") long maxSize,
+                     @Value("${coderhack.cache.ttl:5m}") Duration ttl,
+                     @Value("${coderhack.cache.negative-ttl:2s}") Duration negativeTtl,
+                     MeterRegistry meterRegistry) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+        CaffeineCacheMetrics.monitor(meterRegistry, missing, "users.missing");
+    }
+
+    /**
+     * @param userId The ID of the user.
+     * @return The cached user, or null on a miss.
+     */
+    public User get(String userId) {
+        return users.getIfPresent(userId);
+    }
+
+    /**
+     * @param userId The ID of the user.
+     * @return true if a recent lookup found no user with this ID.
+     */
+    public boolean isKnownMissing(String userId) {
+        return missing.getIfPresent(userId) != null;
+    }
+
+    /**
+     * Write-through: stores the user as it now is in the database, unless the cache already holds a
+     * newer version of it from a concurrent update that finished first. An equal version replaces the
+     * cached copy, since buffered score changes are applied before their version is written.
+     *
+     * @param user The stored user.
+     */
+    public void put(User user) {
+        bumpGeneration(user.getUserId());
+        missing.invalidate(user.getUserId());
+        users.asMap().merge(user.getUserId(), user,
+                (cached, stored) -> stored.getVersion() >= cached.getVersion() ? stored : cached);
+    }
+
+    /**
+     * Starts a read-through fill; call before reading the user from the database.
+     *
+     * @param userId The ID of the user.
+     * @return The token to pass to fill or fillMissing.
+     */
+    public long fillToken(String userId) {
+        return generations.get(stripe(userId));
+    }
+
+    /**
+     * Read-through fill: stores a user read from the database unless a write has already put a copy,
+     * and drops it again if a write or eviction of the user started after the token was taken, so a
+     * slow read can never overwrite a fresher write or bring back a deleted user.
+     *
+     * @param user  The user as read from the database.
+     * @param token The token from fillToken, taken before the read.
+     */
+    public void fill(User user, long token) {
+        if (users.asMap().putIfAbsent(user.getUserId(), user) == null && generations.get(stripe(user.getUserId())) != token) {
+            users.asMap().remove(user.getUserId(), user);
+        }
+    }
+
+    /**
+     * Negative read-through fill: remembers that no user has this ID until the negative TTL expires,
+     * unless a write of the ID started after the token was taken.
+     *
+     * @param userId The ID that was not found.
+     * @param token  The token from fillToken, taken before the read.
+     */
+    public void fillMissing(String userId, long token) {
+        missing.put(userId, Boolean.TRUE);
+        if (generations.get(stripe(userId)) != token) {
+            missing.asMap().remove(userId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Drops any cached state for a user, positive or negative.
+     *
+     * @param userId The ID of the user.
+     */
+    public void evict(String userId) {
+        bumpGeneration(userId);
+        users.invalidate(userId);
+        missing.invalidate(userId);
+    }
+
+    // Before the change itself: a fill that checks after the change then always sees the new generation.
+    private void bumpGeneration(String userId) {
+        generations.incrementAndGet(stripe(userId));
+    }
+
+    private static int stripe(String userId) {
+        return Math.floorMod(userId.hashCode(), GENERATION_STRIPES);
+    }
+}
@@ -0,0 +1,320 @@
+package com.crio.coderhack.service;
+
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.repository.LegacyBadgeMigration;
+import com.crio.coderhack.repository.UserRepository;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Keeps this instance's read-side state coherent with writes handled by other instances
+// (coderhack.change-stream.enabled=true). A daemon thread follows a MongoDB change stream on the
+// users collection; every insert, update, replace or delete is applied to LeaderboardIndex and
+// UserCache and published as a UserChangeEvent, so the GET /users snapshot and the live push see it too.
+// Changes this instance made itself come back through the stream as well; they already match the
+// index and are skipped, so nothing is published twice.
+//
+// Change streams need a replica set (a single-node one is enough, see README); a standalone mongod
+// rejects them and the listener stops after logging an error.
+//
+// Resuming: the last resume token is kept in memory, so after a dropped connection or a failover the
+// stream continues where it stopped. At startup the stream begins at the cluster time read while the
+// beans are created, which is before LeaderboardIndex loads, so no write between the load and the
+// stream is missed. If the oplog no longer covers the token, the users are read again and the
+// differences to the index are applied as ordinary changes.
+@Component
+@Profile("!inmemory")
+public class UserChangeStreamListener implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeStreamListener.class);
+
+    // Server error codes: the resume point is gone from the oplog / change streams are unavailable.
+    private static final Set<Integer> HISTORY_LOST = Set.of(286, 280);
+    private static final Set<Integer> UNSUPPORTED = Set.of(40573, 40324);
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final boolean enabled;
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final LeaderboardIndex leaderboardIndex;
+    private final UserCache userCache;
+    private final ScoreWriteBuffer scoreWriteBuffer;
+    private final LegacyBadgeMigration legacyBadgeMigration;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String collection;
+    private final Counter appliedCounter;
+    private final Counter unchangedCounter;
+    private final Counter resyncCounter;
+    // Where the next stream starts: after resumeToken if set, otherwise at startAt, otherwise now.
+    private volatile BsonDocument resumeToken;
+    private volatile BsonTimestamp startAt;
+    private volatile boolean running;
+    private Thread thread;
+
+    // Constructor injection for the switch, the database, the read-side structures the changes are
+    // applied to, the publisher for UserChangeEvents and the metrics registry
+    @Autowired
+    public UserChangeStreamListener(@Value("${coderhack.change-stream.enabled:false}") boolean enabled,
+                                    MongoTemplate mongoTemplate, UserRepository userRepository,
+                                    LeaderboardIndex leaderboardIndex, UserCache userCache,
+                                    ScoreWriteBuffer scoreWriteBuffer, LegacyBadgeMigration legacyBadgeMigration,
+                                    ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.mongoTemplate = mongoTemplate;
+        this.userRepository = userRepository;
+        this.leaderboardIndex = leaderboardIndex;
+        this.userCache = userCache;
+        this.scoreWriteBuffer = scoreWriteBuffer;
+        this.legacyBadgeMigration = legacyBadgeMigration;
+        this.eventPublisher = eventPublisher;
+        this.collection = mongoTemplate.getCollectionName(User.class);
+        this.appliedCounter = Counter.builder("coderhack.change_stream.events")
+                .description("Change stream events for the users collection")
+                .tag("result", "applied")
+                .register(meterRegistry);
+        this.unchangedCounter = Counter.builder("coderhack.change_stream.events")
+                .description("Change stream events for the users collection")
+                .tag("result", "unchanged")
+                .register(meterRegistry);
+        this.resyncCounter = Counter.builder("coderhack.change_stream.resyncs")
+                .description("Full comparisons against the users collection after the stream lost its position")
+                .register(meterRegistry);
+        if (enabled) {
+            // Singletons are all created before LeaderboardIndex loads, so this time precedes the load.
+            startAt = operationTime();
+        }
+    }
+
+    /**
+     * Starts following the change stream once every bean is ready.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "user-change-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the stream thread.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Applies one change event to the index and the cache, and publishes it if it changed anything.
+     *
+     * @param change An event from the users collection's change stream.
+     */
+    public void apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                Document document = change.getFullDocument();
+                // Null if the user was deleted before the lookup; the delete event follows.
+                if (document != null) {
+                    User user = mongoTemplate.getConverter().read(User.class, document);
+                    applyUpsert(legacyBadgeMigration.onAfterConvert(user, document, collection));
+                }
+            }
+            case DELETE -> {
+                BsonValue id = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+                if (id != null && id.isString()) {
+                    applyDelete(id.asString().getValue());
+                }
+            }
+            // Drops, renames and invalidations end the stream; follow() handles them.
+            default -> {
+            }
+        }
+    }
+
+    private void run() {
+        long backoff = 1000;
+        while (running) {
+            try {
+                if (resumeToken == null && startAt == null) {
+                    BsonTimestamp time = operationTime();
+                    resync();
+                    startAt = time;
+                }
+                follow();
+                backoff = 1000;
+            } catch (MongoException e) {
+                if (UNSUPPORTED.contains(e.getCode())) {
+                    log.error("MongoDB does not support change streams here (a replica set is required); "
+                            + "changes made by other instances will not be seen", e);
+                    return;
+                }
+                if (HISTORY_LOST.contains(e.getCode())) {
+                    log.warn("Change stream position is no longer in the oplog, comparing users against the database");
+                    resumeToken = null;
+                    startAt = null;
+                    continue;
+                }
+                log.warn("Change stream failed, retrying in {} ms", backoff, e);
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            } catch (RuntimeException e) {
+                log.warn("Change stream listener failed, retrying in {} ms", backoff, e);
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    // Follows the stream until shutdown, an error, or an event that ends the stream.
+    private void follow() {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(collection)
+                .watch(List.of(Aggregates.match(Filters.in("operationType",
+                        "insert", "update", "replace", "delete", "drop", "dropDatabase", "rename", "invalidate"))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        } else if (startAt != null) {
+            stream = stream.startAtOperationTime(startAt);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && isTerminal(change)) {
+                    // The collection is gone or replaced; the next round compares users against the database.
+                    resumeToken = null;
+                    startAt = null;
+                    return;
+                }
+                if (change != null) {
+                    apply(change);
+                }
+                // Advances with every batch, even an empty one, so an idle stream does not fall out of the oplog.
+                BsonDocument token = cursor.getResumeToken();
+                if (token != null) {
+                    resumeToken = token;
+                }
+            }
+        }
+    }
+
+    private static boolean isTerminal(ChangeStreamDocument<Document> change) {
+        return switch (change.getOperationType()) {
+            case DROP, DROP_DATABASE, RENAME, INVALIDATE -> true;
+            default -> false;
+        };
+    }
+
+    private void applyUpsert(User stored) {
+        // A score accepted here but not yet written behind is newer than the stored document.
+        User user = scoreWriteBuffer.overlay(stored);
+        // The looked-up document may be older than the copy in memory: a later local update can have
+        // been applied before this event arrived. Only a newer version is applied, and only a newer
+        // version that changes what the user looks like is published again.
+        boolean changed;
+        if (leaderboardIndex.isLoaded()) {
+            Optional<User> previous = leaderboardIndex.find(user.getUserId());
+            changed = leaderboardIndex.upsert(user) && !previous.map(indexed -> sameState(indexed, user)).orElse(false);
+        } else {
+            User cached = userCache.get(user.getUserId());
+            changed = cached == null || (user.getVersion() >= cached.getVersion() && !sameState(cached, user));
+        }
+        if (!changed) {
+            unchangedCounter.increment();
+            return;
+        }
+        userCache.put(user);
+        appliedCounter.increment();
+        eventPublisher.publishEvent(UserChangeEvent.upserted(user));
+    }
+
+    // Equal apart from the version, as an echo of a buffered score change is once it has been written.
+    private static boolean sameState(User a, User b) {
+        return a.getScore() == b.getScore() && a.getBadgeMask() == b.getBadgeMask()
+                && Objects.equals(a.getUsername(), b.getUsername());
+    }
+
+    private void applyDelete(String userId) {
+        boolean changed = !leaderboardIndex.isLoaded() || leaderboardIndex.find(userId).isPresent();
+        leaderboardIndex.remove(userId);
+        userCache.evict(userId);
+        scoreWriteBuffer.discard(userId);
+        if (!changed) {
+            unchangedCounter.increment();
+            return;
+        }
+        appliedCounter.increment();
+        eventPublisher.publishEvent(UserChangeEvent.deleted(userId));
+    }
+
+    // Brings the index up to date when the stream cannot say what changed: on the first start without
+    // a start time, and after the oplog dropped the resume point. An unloaded index is simply loaded.
+    private void resync() {
+        List<User> users = userRepository.findAll();
+        resyncCounter.increment();
+        if (!leaderboardIndex.isLoaded()) {
+            leaderboardIndex.reload(users);
+            return;
+        }
+        Set<String> stale = new HashSet<>();
+        leaderboardIndex.ascending().forEach(user -> stale.add(user.getUserId()));
+        for (User user : users) {
+            stale.remove(user.getUserId());
+            applyUpsert(user);
+        }
+        stale.forEach(this::applyDelete);
+    }
+
+    // The cluster time of a no-op command; null on a standalone server, which has none.
+    private BsonTimestamp operationTime() {
+        try {
+            Object time = mongoTemplate.getDb().runCommand(new Document("ping", 1)).get("operationTime");
+            return time instanceof BsonTimestamp ? (BsonTimestamp) time : null;
+        } catch (RuntimeException e) {
+            log.warn("Could not read the cluster time, the change stream will compare users against the database first", e);
+            return null;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
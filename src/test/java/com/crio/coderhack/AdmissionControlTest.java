@@ -0,0 +1,171 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.admission.AdmissionControl;
+import com.crio.coderhack.dto.ScoreUpdate;
+import com.crio.coderhack.dto.ScoreUpdateResult;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+import com.crio.coderhack.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AdmissionControlTest {
+
+    @Mock
+    private UserService target;
+
+    @Mock
+    private UserRepository repository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        // Repository calls are only limited while an HTTP request is being served.
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()), true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void updateScore_OverUserBurst_IsRejectedPerUser() {
+        UserService userService = serviceProxy(new AdmissionControl(true, 1, 2, 1000, 10, 10, 10, Duration.ofMillis(100), registry));
+
+        userService.updateScore("alice", 10);
+        userService.updateScore("alice", 20);
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> userService.updateScore("alice", 30));
+        userService.updateScore("bob", 10);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        // One write per second: the next token is due in at most a second.
+        assertEquals("1", e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(target, never()).updateScore("alice", 30);
+        verify(target).updateScore("bob", 10);
+        assertEquals(1, registry.get("coderhack.admission.shed").tag("reason", "user-rate").counter().count());
+    }
+
+    @Test
+    void updateScores_ItemsOverUserBurst_Get429InPlace() {
+        List<String> applied = new ArrayList<>();
+        when(target.updateScores(any())).thenAnswer(invocation -> {
+            Iterator<ScoreUpdate> updates = invocation.getArgument(0);
+            List<ScoreUpdateResult> results = new ArrayList<>();
+            while (updates.hasNext()) {
+                ScoreUpdate update = updates.next();
+                applied.add(update == null ? null : update.getUserId());
+                results.add(new ScoreUpdateResult(update == null ? null : update.getUserId(), 200, null));
+            }
+            return results;
+        });
+        UserService userService = serviceProxy(new AdmissionControl(true, 1, 2, 1000, 10, 10, 10, Duration.ofMillis(100), registry));
+        userService.updateScore("alice", 5);
+
+        List<ScoreUpdateResult> results = userService.updateScores(Arrays.asList(
+                new ScoreUpdate("alice", 10),
+                new ScoreUpdate("alice", 20),
+                null,
+                new ScoreUpdate("bob", 30),
+                new ScoreUpdate("alice", 40)).iterator());
+
+        // alice had one token left after the single update; her later items are held back in place.
+        assertEquals(Arrays.asList(200, 429, 200, 200, 429),
+                results.stream().map(ScoreUpdateResult::getStatus).collect(Collectors.toList()));
+        assertEquals("alice", results.get(4).getUserId());
+        assertEquals(Arrays.asList("alice", null, "bob"), applied);
+        assertEquals(2, registry.get("coderhack.admission.shed").tag("reason", "user-rate").counter().count());
+    }
+
+    @Test
+    void writeBudgetExhausted_ShedsWritesButNotReads() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        User alice = new User("alice", "alice");
+        when(repository.insert(alice)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return alice;
+        });
+        when(repository.findById("bob")).thenReturn(Optional.empty());
+        // One write at a time and nobody may wait for it.
+        UserRepository userRepository = repositoryProxy(new AdmissionControl(true, 100, 100, 1000, 1, 1, 0, Duration.ofMillis(100), registry));
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        CompletableFuture<User> running = CompletableFuture.supplyAsync(() -> {
+            RequestContextHolder.setRequestAttributes(request);
+            return userRepository.insert(alice);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> userRepository.deleteById("carol"));
+        assertTrue(userRepository.findById("bob").isEmpty());
+        release.countDown();
+
+        assertEquals("alice", running.get(5, TimeUnit.SECONDS).getUserId());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals("1", e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(repository, never()).deleteById("carol");
+        assertEquals(1, registry.get("coderhack.admission.shed").tag("budget", "write").tag("reason", "queue-full").counter().count());
+        // The permit is back once the first write has finished.
+        userRepository.deleteById("carol");
+        verify(repository).deleteById("carol");
+    }
+
+    @Test
+    void callsOutsideRequests_AreNeverShed() {
+        // No permits at all: any limited call would be rejected.
+        UserRepository userRepository = repositoryProxy(new AdmissionControl(true, 100, 100, 1000, 0, 0, 0, Duration.ofMillis(100), registry));
+        RequestContextHolder.resetRequestAttributes();
+
+        // A write-behind flush or index load runs on a background thread.
+        userRepository.bulkUpdateScores(List.of());
+        userRepository.count();
+
+        verify(repository).bulkUpdateScores(List.of());
+        verify(repository).count();
+        assertEquals(0, registry.get("coderhack.admission.admitted").tag("budget", "write").counter().count());
+    }
+
+    private UserService serviceProxy(AdmissionControl admissionControl) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(admissionControl);
+        return factory.getProxy();
+    }
+
+    private UserRepository repositoryProxy(AdmissionControl admissionControl) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(repository);
+        factory.addInterface(UserRepository.class);
+        factory.addAspect(admissionControl);
+        return factory.getProxy();
+    }
+}
@@ -0,0 +1,172 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.dto.LeaderboardRow;
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.CompactUserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactUserRepositoryTest {
+
+    private static final Sort LEADERBOARD_SORT = Sort.by(Sort.Order.asc("score"), Sort.Order.asc("userId"));
+
+    @TempDir
+    Path snapshotDir;
+
+    private final CompactUserRepository repository = new CompactUserRepository("");
+
+    @Test
+    void insert_StoresUserAndRejectsDuplicateId() {
+        repository.insert(new User("u1", "alice"));
+
+        assertEquals(new User("u1", "alice", 0, new HashSet<>()), repository.findById("u1").orElseThrow());
+        assertThrows(DuplicateKeyException.class, () -> repository.insert(new User("u1", "other")));
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void updateScoreAndAddBadges_KeepsEarnedBadges() {
+        repository.insert(new User("u1", "alice"));
+
+        User first = repository.updateScoreAndAddBadges("u1", 70, EnumSet.allOf(Badge.class)).orElseThrow();
+        User updated = repository.updateScoreAndAddBadges("u1", 10, EnumSet.of(Badge.CODE_NINJA)).orElseThrow();
+
+        assertEquals(10, updated.getScore());
+        assertEquals(EnumSet.allOf(Badge.class), updated.getBadges());
+        assertTrue(updated.getVersion() > first.getVersion());
+        assertEquals(updated.getVersion(), repository.findById("u1").orElseThrow().getVersion());
+        assertTrue(repository.updateScoreAndAddBadges("missing", 10, EnumSet.noneOf(Badge.class)).isEmpty());
+    }
+
+    @Test
+    void deleteById_FreesSlotForReuse() {
+        for (int i = 0; i < 100; i++) {
+            repository.insert(new User("u" + i, "name" + i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            repository.deleteById("u" + i);
+        }
+        repository.insert(new User("new", "newcomer"));
+
+        assertEquals(51, repository.count());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 1, repository.existsById("u" + i), "u" + i);
+        }
+        assertEquals("newcomer", repository.findById("new").orElseThrow().getUsername());
+    }
+
+    @Test
+    void stream_SkipsSlotReusedAfterStreamWasCreated() {
+        seed(user("alice", 50), user("bob", 10), user("carol", 90));
+
+        try (Stream<LeaderboardRow> stream = repository.streamRowsByOrderByScoreAscUserIdAsc()) {
+            // bob's slot is freed and handed to a new user before the stream reads it.
+            repository.deleteById("bob");
+            repository.insert(user("mallory", 99));
+
+            assertEquals(Arrays.asList("alice", "carol"), stream.map(LeaderboardRow::getUserId).toList());
+        }
+    }
+
+    @Test
+    void sortedQueries_UseLeaderboardOrder() {
+        seed(user("carol", 90), user("alice", 50), user("bob", 10), user("dave", 50));
+
+        assertEquals(Arrays.asList("bob", "alice", "dave", "carol"), ids(repository.findAllByOrderByScoreAsc()));
+        Slice<User> page = repository.findAllBy(PageRequest.of(1, 2, LEADERBOARD_SORT));
+        assertEquals(Arrays.asList("dave", "carol"), ids(page.getContent()));
+        assertFalse(page.hasNext());
+        Slice<User> after = repository.findAllAfter(50, "alice", PageRequest.of(0, 1, LEADERBOARD_SORT));
+        assertEquals(List.of("dave"), ids(after.getContent()));
+        assertTrue(after.hasNext());
+        assertEquals(3, repository.countByScoreGreaterThan(10));
+        try (Stream<LeaderboardRow> stream = repository.streamRowsByOrderByScoreAscUserIdAsc()) {
+            List<LeaderboardRow> rows = stream.collect(Collectors.toList());
+            assertEquals(Arrays.asList("bob", "alice", "dave", "carol"), rows.stream().map(LeaderboardRow::getUserId).toList());
+            assertEquals(90, rows.get(3).getScore());
+            assertEquals("carol-name", rows.get(3).getUsername());
+        }
+    }
+
+    @Test
+    void sortedQueries_SeeWritesAfterCachedOrder() {
+        seed(user("alice", 50), user("bob", 10));
+        repository.findAllByOrderByScoreAsc();
+
+        repository.updateScoreAndAddBadges("bob", 80, EnumSet.noneOf(Badge.class));
+
+        assertEquals(Arrays.asList("alice", "bob"), ids(repository.findAllByOrderByScoreAsc()));
+    }
+
+    @Test
+    void bulkUpdateScoresAndInsertNewUsers_ReportMissingAndDuplicates() {
+        seed(user("alice", 0));
+
+        Set<String> missing = repository.bulkUpdateScores(Arrays.asList(
+                new ScoreChange("alice", 40, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP)),
+                new ScoreChange("ghost", 40, EnumSet.noneOf(Badge.class))));
+        Set<Integer> duplicates = repository.insertNewUsers(Arrays.asList(
+                new User("alice", "again"), new User("bob", "bob"), new User("bob", "bob again")));
+
+        assertEquals(Set.of("ghost"), missing);
+        assertEquals(40, repository.findById("alice").orElseThrow().getScore());
+        assertEquals(Set.of(0, 2), duplicates);
+        assertEquals("bob", repository.findById("bob").orElseThrow().getUsername());
+    }
+
+    @Test
+    void snapshot_RestoresEveryUser() {
+        for (int i = 0; i < 5000; i++) {
+            repository.insert(new User("user-" + i, i % 7 == 0 ? null : "name-" + i, i % 101, Badge.fromMask(i % 8)));
+        }
+        repository.deleteById("user-42");
+        // Multi-byte UTF-8 IDs and names must survive the arena and the file.
+        repository.insert(new User("ünïcødé-✓", "名前", 99, EnumSet.of(Badge.CODE_MASTER)));
+        Path file = snapshotDir.resolve("users.snapshot");
+
+        repository.snapshot(file);
+        CompactUserRepository restored = new CompactUserRepository(file.toString());
+
+        assertEquals(repository.count(), restored.count());
+        assertEquals(repository.findAllByOrderByScoreAsc(), restored.findAllByOrderByScoreAsc());
+        assertFalse(restored.existsById("user-42"));
+        assertEquals("名前", restored.findById("ünïcødé-✓").orElseThrow().getUsername());
+        assertNull(restored.findById("user-7").orElseThrow().getUsername());
+    }
+
+    @Test
+    void findAll_RejectsUnsupportedSort() {
+        assertThrows(UnsupportedOperationException.class, () -> repository.findAll(Sort.by("username")));
+    }
+
+    private void seed(User... users) {
+        for (User user : users) {
+            repository.insert(user);
+        }
+    }
+
+    private static User user(String userId, int score) {
+        return new User(userId, userId + "-name", score, new HashSet<>());
+    }
+
+    private static List<String> ids(List<User> users) {
+        return users.stream().map(User::getUserId).collect(Collectors.toList());
+    }
+}
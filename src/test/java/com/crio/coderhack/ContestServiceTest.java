@@ -0,0 +1,102 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.dto.ContestLeaderboardPage;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.ContestScore;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.repository.ContestScoreRepository;
+import com.crio.coderhack.service.ContestService;
+import com.crio.coderhack.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ContestServiceTest {
+
+    @Mock
+    private ContestScoreRepository contestScoreRepository;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private ContestService contestService;
+
+    @Test
+    void updateScore_RegisteredUser_UpsertsEntryWithContestBadges() {
+        ContestScore stored = new ContestScore("weekly", "u1", "alice", 45, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP));
+        when(userService.getUserById("u1")).thenReturn(Optional.of(new User("u1", "alice")));
+        when(contestScoreRepository.upsertScore("weekly", "u1", "alice", 45, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP)))
+                .thenReturn(stored);
+
+        assertSame(stored, contestService.updateScore("weekly", "u1", 45));
+    }
+
+    @Test
+    void updateScore_UnknownUser_ThrowsNotFound() {
+        when(userService.getUserById("ghost")).thenReturn(Optional.empty());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> contestService.updateScore("weekly", "ghost", 10));
+
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+        verify(contestScoreRepository, never()).upsertScore(anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void updateScore_OutOfRange_ThrowsBadRequest() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> contestService.updateScore("weekly", "u1", 101));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        verifyNoInteractions(userService, contestScoreRepository);
+    }
+
+    @Test
+    void getScore_NoEntry_ThrowsNotFound() {
+        when(contestScoreRepository.findByContestIdAndUserId("weekly", "u1")).thenReturn(Optional.empty());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> contestService.getScore("weekly", "u1"));
+
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+
+    @Test
+    void getLeaderboardPage_QueriesOnlyTheContestInLeaderboardOrder() {
+        List<ContestScore> entries = List.of(new ContestScore("weekly", "u1", "alice", 10, EnumSet.of(Badge.CODE_NINJA)));
+        PageRequest request = PageRequest.of(2, 1, Sort.by(Sort.Order.asc("score"), Sort.Order.asc("userId")));
+        when(contestScoreRepository.findByContestId("weekly", request)).thenReturn(new SliceImpl<>(entries, request, true));
+
+        ContestLeaderboardPage page = contestService.getLeaderboardPage("weekly", 2, 1);
+
+        assertEquals(new ContestLeaderboardPage("weekly", entries, 2, 1, true), page);
+        assertThrows(ResponseStatusException.class, () -> contestService.getLeaderboardPage("weekly", 0, 0));
+    }
+
+    @Test
+    void onUserChange_DeletedUser_RemovesEveryContestEntry() {
+        contestService.onUserChange(UserChangeEvent.upserted(new User("u1", "alice")));
+        contestService.onUserChange(UserChangeEvent.deleted("u1"));
+
+        verify(contestScoreRepository, times(1)).deleteByUserId("u1");
+    }
+}
@@ -0,0 +1,137 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.dto.LeaderboardChange;
+import com.crio.coderhack.dto.LeaderboardDiff;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.service.LeaderboardDiffPublisher;
+import com.crio.coderhack.service.LeaderboardIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LeaderboardDiffPublisherTest {
+
+    // Unloaded by default, so changes are pushed without ranks.
+    @Mock
+    private LeaderboardIndex leaderboardIndex;
+
+    private LeaderboardDiffPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        // Pushes run on the calling thread, so flush() has delivered everything when it returns.
+        publisher = new LeaderboardDiffPublisher(leaderboardIndex, Runnable::run, 2);
+    }
+
+    @Test
+    void flush_CoalescesChangesPerUser() {
+        List<LeaderboardDiff> received = new ArrayList<>();
+        publisher.subscribe(received::add);
+
+        publisher.onUserChange(UserChangeEvent.upserted(new User("user1", "alice", 10, new HashSet<>())));
+        publisher.onUserChange(UserChangeEvent.upserted(new User("user1", "alice", 40, new HashSet<>())));
+        publisher.onUserChange(UserChangeEvent.deleted("user2"));
+        publisher.flush();
+        // An empty window sends nothing.
+        publisher.flush();
+
+        assertEquals(1, received.size());
+        LeaderboardDiff diff = received.get(0);
+        assertEquals(1, diff.getVersion());
+        assertEquals(2, diff.getChanges().size());
+        LeaderboardChange user1 = diff.getChanges().stream().filter(c -> c.getUserId().equals("user1")).findFirst().orElseThrow();
+        assertEquals(40, user1.getScore());
+        assertFalse(user1.isRemoved());
+        assertTrue(diff.getChanges().stream().anyMatch(c -> c.getUserId().equals("user2") && c.isRemoved()));
+    }
+
+    @Test
+    void flush_SkipsSubscribersThatFailed() {
+        List<LeaderboardDiff> received = new ArrayList<>();
+        publisher.subscribe(diff -> {
+            throw new IllegalStateException("client went away");
+        });
+        Runnable unsubscribe = publisher.subscribe(received::add);
+
+        publisher.onUserChange(UserChangeEvent.deleted("user1"));
+        publisher.flush();
+        unsubscribe.run();
+        // With no subscribers left, changes are not collected at all.
+        publisher.onUserChange(UserChangeEvent.deleted("user2"));
+        publisher.flush();
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void flush_StalledSubscriber_DoesNotHoldUpOthers() throws Exception {
+        ExecutorService pushExecutor = Executors.newCachedThreadPool();
+        LeaderboardDiffPublisher asyncPublisher = new LeaderboardDiffPublisher(leaderboardIndex, pushExecutor, 16);
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(3);
+        List<Long> stalledReceived = new CopyOnWriteArrayList<>();
+        asyncPublisher.subscribe(diff -> {
+            stalledReceived.add(diff.getVersion());
+            stuck.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        asyncPublisher.subscribe(diff -> delivered.countDown());
+
+        try {
+            asyncPublisher.onUserChange(UserChangeEvent.deleted("user0"));
+            asyncPublisher.flush();
+            assertTrue(stuck.await(5, TimeUnit.SECONDS));
+            // The first subscriber is stuck on the first diff; the next windows still go out.
+            for (int window = 1; window < 3; window++) {
+                asyncPublisher.onUserChange(UserChangeEvent.deleted("user" + window));
+                asyncPublisher.flush();
+            }
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(1L), stalledReceived);
+        } finally {
+            release.countDown();
+            asyncPublisher.shutdown();
+            pushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void flush_SubscriberBehindByMoreThanQueue_LosesOldestDiffs() {
+        List<Runnable> pushes = new ArrayList<>();
+        // Pushes only run when the test says so, like a client that has stopped reading.
+        LeaderboardDiffPublisher queuedPublisher = new LeaderboardDiffPublisher(leaderboardIndex, pushes::add, 2);
+        List<Long> received = new ArrayList<>();
+        queuedPublisher.subscribe(diff -> received.add(diff.getVersion()));
+
+        for (int window = 0; window < 4; window++) {
+            queuedPublisher.onUserChange(UserChangeEvent.deleted("user" + window));
+            queuedPublisher.flush();
+        }
+        assertEquals(1, pushes.size());
+        pushes.get(0).run();
+
+        // Diffs 1 and 2 were dropped; the client notices the gap in versions and re-fetches.
+        assertEquals(List.of(3L, 4L), received);
+    }
+}
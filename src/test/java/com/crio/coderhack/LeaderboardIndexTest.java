@@ -0,0 +1,142 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.dto.UserRank;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+import com.crio.coderhack.service.LeaderboardIndex;
+import com.crio.coderhack.service.ScoreHistogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class LeaderboardIndexTest {
+
+    private LeaderboardIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // The repository is only used for the startup load, which these tests replace with reload().
+        index = new LeaderboardIndex(mock(UserRepository.class));
+        index.reload(Arrays.asList(user("carol", 90), user("alice", 50), user("bob", 10), user("dave", 50)));
+    }
+
+    @Test
+    void ascending_SortedByScoreThenUserId() {
+        assertTrue(index.isLoaded());
+        assertEquals(Arrays.asList("bob", "alice", "dave", "carol"), ids(index.ascending()));
+    }
+
+    @Test
+    void range_ReturnsWindow() {
+        assertEquals(Arrays.asList("alice", "dave"), ids(index.range(1, 2)));
+        assertEquals(List.of("carol"), ids(index.range(3, 10)));
+        assertTrue(index.range(4, 10).isEmpty());
+    }
+
+    @Test
+    void range_OffsetAndLimitBounds() {
+        assertEquals(Arrays.asList("bob", "alice"), ids(index.range(0, 2)));
+        assertTrue(index.range(0, 0).isEmpty());
+        // Offsets past the end, however large, return nothing instead of failing.
+        assertTrue(index.range(Long.MAX_VALUE, 10).isEmpty());
+        assertEquals(4, index.range(0, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void rangeAfter_TiedCursor_ContinuesWithinTheSameScore() {
+        // alice and dave share 50; the userId breaks the tie.
+        assertEquals(Arrays.asList("dave", "carol"), ids(index.rangeAfter(50, "alice", 10)));
+        assertEquals(List.of("dave"), ids(index.rangeAfter(50, "alice", 1)));
+        assertTrue(index.rangeAfter(90, "carol", 10).isEmpty());
+    }
+
+    @Test
+    void rangeAfter_AbsentCursor_ResumesAtItsPosition() {
+        // A cursor whose user has since been deleted or moved still sorts between its neighbours.
+        assertEquals(Arrays.asList("dave", "carol"), ids(index.rangeAfter(50, "bob", 10)));
+        assertEquals(Arrays.asList("alice", "dave", "carol"), ids(index.rangeAfter(10, "zed", 10)));
+        assertEquals(Arrays.asList("bob", "alice"), ids(index.rangeAfter(-1, "", 2)));
+        assertTrue(index.rangeAfter(100, "", 10).isEmpty());
+    }
+
+    @Test
+    void rank_TiedUsersShareRank() {
+        assertEquals(1, index.rank("carol").orElseThrow().getRank());
+        assertEquals(2, index.rank("alice").orElseThrow().getRank());
+        assertEquals(2, index.rank("dave").orElseThrow().getRank());
+        UserRank bob = index.rank("bob").orElseThrow();
+        assertEquals(4, bob.getRank());
+        assertEquals(4, bob.getTotalUsers());
+        assertFalse(index.rank("nobody").isPresent());
+    }
+
+    @Test
+    void upsertAndRemove_KeepOrderCurrent() {
+        index.upsert(user("bob", 95, 1));
+        index.remove("carol");
+        index.upsert(user("erin", 0));
+
+        assertEquals(Arrays.asList("erin", "alice", "dave", "bob"), ids(index.ascending()));
+        assertEquals(1, index.rank("bob").orElseThrow().getRank());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void upsert_OlderVersionDoesNotOverwriteNewer() {
+        // Two updates of bob finished in the database in order, but reach the index in reverse.
+        assertTrue(index.upsert(user("bob", 95, 2)));
+        assertFalse(index.upsert(user("bob", 40, 1)));
+        assertFalse(index.upsert(user("bob", 95, 2)));
+
+        assertEquals(95, index.find("bob").orElseThrow().getScore());
+        assertEquals(2, index.find("bob").orElseThrow().getVersion());
+        assertEquals(1, index.rank("bob").orElseThrow().getRank());
+    }
+
+    @Test
+    void histogram_FollowsEveryChange() {
+        index.upsert(user("erin", 0));
+        index.applyScore("bob", 60, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER));
+        index.applyScore("bob", 20, EnumSet.of(Badge.CODE_NINJA));
+        index.remove("carol");
+        index.remove("nobody");
+
+        ScoreHistogram histogram = index.histogram();
+        assertEquals(4, histogram.total());
+        assertEquals(2, histogram.countAbove(20));
+        assertEquals(3, histogram.countAbove(0));
+        assertEquals(0, histogram.countAbove(50));
+        assertEquals(3, index.rank("bob").orElseThrow().getRank());
+        // bob keeps the badges of his earlier score of 60.
+        assertEquals(Map.of(Badge.CODE_NINJA, 1L, Badge.CODE_CHAMP, 1L, Badge.CODE_MASTER, 1L), histogram.badgeCounts());
+
+        index.reload(List.of(user("frank", 100)));
+        assertEquals(1, histogram.total());
+        assertEquals(0, histogram.countAbove(100));
+        assertEquals(Map.of(Badge.CODE_NINJA, 0L, Badge.CODE_CHAMP, 0L, Badge.CODE_MASTER, 0L), histogram.badgeCounts());
+    }
+
+    private static User user(String userId, int score) {
+        return user(userId, score, 0);
+    }
+
+    private static User user(String userId, int score, long version) {
+        User user = new User(userId, userId);
+        user.setScore(score);
+        user.setVersion(version);
+        return user;
+    }
+
+    private static List<String> ids(List<User> users) {
+        return users.stream().map(User::getUserId).collect(Collectors.toList());
+    }
+}
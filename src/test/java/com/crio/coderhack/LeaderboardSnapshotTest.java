@@ -0,0 +1,123 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.service.LeaderboardSnapshot;
+import com.crio.coderhack.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LeaderboardSnapshotTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void get_RebuildsOncePerChange() throws IOException {
+        when(userService.getAllUsers()).thenReturn(Collections.singletonList(new User("user1", "alice")));
+        LeaderboardSnapshot leaderboardSnapshot = new LeaderboardSnapshot(userService, objectMapper, taskScheduler, Duration.ZERO, true);
+
+        LeaderboardSnapshot.Snapshot first = leaderboardSnapshot.get();
+        // No writes in between: same bytes and ETag, no second serialization.
+        assertSame(first, leaderboardSnapshot.get());
+        leaderboardSnapshot.onUserChange(UserChangeEvent.deleted("user2"));
+        LeaderboardSnapshot.Snapshot second = leaderboardSnapshot.get();
+
+        assertNotEquals(first.getEtag(), second.getEtag());
+        verify(userService, times(2)).getAllUsers();
+        verifyNoInteractions(taskScheduler);
+        assertEquals("[{\"userId\":\"user1\",\"username\":\"alice\",\"score\":0,\"badges\":[]}]", new String(second.getJson()));
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(second.getGzippedJson()))) {
+            assertArrayEquals(second.getJson(), gunzip.readAllBytes());
+        }
+    }
+
+    @Test
+    void body_EncodesOtherFormatsOnceOnRequest() throws IOException {
+        User alice = new User("user1", "alice");
+        alice.setScore(40);
+        alice.setBadgeMask(Badge.CODE_NINJA.bit() | Badge.CODE_CHAMP.bit());
+        when(userService.getAllUsers()).thenReturn(List.of(alice, new User("user2", "bob")));
+        LeaderboardSnapshot leaderboardSnapshot = new LeaderboardSnapshot(userService, objectMapper, taskScheduler, Duration.ZERO, false);
+
+        LeaderboardSnapshot.Snapshot snapshot = leaderboardSnapshot.get();
+        LeaderboardSnapshot.Body smile = snapshot.body(LeaderboardSnapshot.Format.SMILE);
+
+        assertSame(smile, snapshot.body(LeaderboardSnapshot.Format.SMILE));
+        assertNotEquals(snapshot.getEtag(), snapshot.getEtag(LeaderboardSnapshot.Format.SMILE));
+        // The gzipped body is a different representation from the identity one.
+        assertNotEquals(snapshot.getEtag(), snapshot.getEtag(LeaderboardSnapshot.Format.JSON, true));
+        assertNotEquals(snapshot.getEtag(LeaderboardSnapshot.Format.SMILE), snapshot.getEtag(LeaderboardSnapshot.Format.SMILE, true));
+        assertEquals(objectMapper.readTree(snapshot.getJson()),
+                new ObjectMapper(new SmileFactory()).readTree(smile.getBytes()));
+        assertEquals("{\"userIds\":[\"user1\",\"user2\"],\"usernames\":[\"alice\",\"bob\"],\"scores\":[40,0],\"badgeMasks\":[3,0]}",
+                new String(snapshot.body(LeaderboardSnapshot.Format.COLUMNS).getBytes()));
+        verify(userService, times(1)).getAllUsers();
+    }
+
+    @Test
+    void get_WithIntervalServesPreviousSnapshotUntilScheduledRebuild() {
+        when(userService.getAllUsers()).thenReturn(Collections.emptyList());
+        LeaderboardSnapshot leaderboardSnapshot = new LeaderboardSnapshot(userService, objectMapper, taskScheduler, Duration.ofSeconds(1), false);
+
+        LeaderboardSnapshot.Snapshot first = leaderboardSnapshot.get();
+        leaderboardSnapshot.onUserChange(UserChangeEvent.deleted("user1"));
+        leaderboardSnapshot.onUserChange(UserChangeEvent.deleted("user2"));
+
+        // Reads stay on the old snapshot, and a burst of writes schedules a single rebuild.
+        assertSame(first, leaderboardSnapshot.get());
+        assertNull(first.getGzippedJson());
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    void scheduledRebuild_Failed_IsRetriedAfterInterval() {
+        when(userService.getAllUsers())
+                .thenReturn(Collections.emptyList())
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(Collections.singletonList(new User("user1", "alice")));
+        LeaderboardSnapshot leaderboardSnapshot = new LeaderboardSnapshot(userService, objectMapper, taskScheduler, Duration.ofSeconds(1), false);
+        LeaderboardSnapshot.Snapshot first = leaderboardSnapshot.get();
+        leaderboardSnapshot.onUserChange(UserChangeEvent.deleted("user2"));
+        ArgumentCaptor<Runnable> rebuild = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Instant> due = ArgumentCaptor.forClass(Instant.class);
+        verify(taskScheduler).schedule(rebuild.capture(), any(Instant.class));
+
+        Instant failedAt = Instant.now();
+        rebuild.getValue().run();
+
+        // No further write arrives, but the failed rebuild is scheduled again one interval later.
+        assertSame(first, leaderboardSnapshot.get());
+        verify(taskScheduler, times(2)).schedule(rebuild.capture(), due.capture());
+        assertFalse(due.getValue().isBefore(failedAt.plusSeconds(1)));
+        rebuild.getValue().run();
+        assertNotSame(first, leaderboardSnapshot.get());
+        assertEquals("[{\"userId\":\"user1\",\"username\":\"alice\",\"score\":0,\"badges\":[]}]",
+                new String(leaderboardSnapshot.get().getJson()));
+    }
+}
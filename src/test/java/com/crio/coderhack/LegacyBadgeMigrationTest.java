@@ -0,0 +1,94 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.LegacyBadgeMigration;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LegacyBadgeMigrationTest {
+
+    @Mock
+    private ObjectProvider<MongoTemplate> mongoTemplateProvider;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private LegacyBadgeMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        migration = new LegacyBadgeMigration(mongoTemplateProvider);
+    }
+
+    @Test
+    void onAfterConvert_FoldsLegacyArrayIntoMask() {
+        User user = new User("user1", "alice", 70, EnumSet.of(Badge.CODE_CHAMP));
+        Document document = new Document("_id", "user1").append("badges", Arrays.asList("CODE_NINJA", "CODE_MASTER"));
+
+        User converted = migration.onAfterConvert(user, document, "users");
+
+        assertEquals(EnumSet.allOf(Badge.class), converted.getBadges());
+        assertEquals(1, migration.backlog());
+    }
+
+    @Test
+    void onAfterConvert_IgnoresMigratedDocuments() {
+        User user = new User("user1", "alice", 70, EnumSet.of(Badge.CODE_CHAMP));
+
+        migration.onAfterConvert(user, new Document("_id", "user1").append("badgeMask", 2), "users");
+
+        assertEquals(EnumSet.of(Badge.CODE_CHAMP), user.getBadges());
+        assertEquals(0, migration.backlog());
+    }
+
+    @Test
+    void flush_RewritesQueuedDocuments() {
+        when(mongoTemplateProvider.getObject()).thenReturn(mongoTemplate);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, null, null));
+        migration.onAfterConvert(new User("user1", "alice"), new Document("badges", Arrays.asList("CODE_NINJA")), "users");
+
+        migration.flush();
+
+        verify(bulkOperations).updateOne(any(Query.class), eq(Update.fromDocument(
+                new Document("$bit", new Document("badgeMask", new Document("or", 1)))
+                        .append("$unset", new Document("badges", "")))));
+        assertEquals(0, migration.backlog());
+    }
+
+    @Test
+    void flush_RequeuesOnFailure() {
+        when(mongoTemplateProvider.getObject()).thenReturn(mongoTemplate);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+        migration.onAfterConvert(new User("user1", "alice"), new Document("badges", Arrays.asList("CODE_NINJA")), "users");
+
+        migration.flush();
+
+        assertEquals(1, migration.backlog());
+    }
+}
@@ -0,0 +1,89 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.ReactiveUserRepository;
+import com.crio.coderhack.service.LeaderboardIndex;
+import com.crio.coderhack.service.ReactiveUserService;
+import com.crio.coderhack.service.ScoreEventLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.EnumSet;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// The reactive service must report the same statuses as UserService; errors arrive as signals, not throws.
+@ExtendWith(MockitoExtension.class)
+public class ReactiveUserServiceTest {
+
+    @Mock
+    private ReactiveUserRepository userRepository;
+
+    @Mock
+    private LeaderboardIndex leaderboardIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ScoreEventLog scoreEventLog;
+
+    @InjectMocks
+    private ReactiveUserService userService;
+
+    @Test
+    void registerUser_UserAlreadyExists() {
+        when(userRepository.insert(any(User.class))).thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+
+        StepVerifier.create(userService.registerUser("user1", "testuser"))
+                .expectErrorMatches(e -> hasStatus(e, HttpStatus.CONFLICT))
+                .verify();
+        verify(leaderboardIndex, never()).upsert(any(User.class));
+    }
+
+    @Test
+    void updateScore_AwardsBadgesAtomically() {
+        User updated = new User("user1", "testuser");
+        updated.setScore(45);
+        when(userRepository.updateScoreAndAddBadges("user1", 45, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP)))
+                .thenReturn(Mono.just(updated));
+
+        StepVerifier.create(userService.updateScore("user1", 45))
+                .expectNext(updated)
+                .verifyComplete();
+        verify(leaderboardIndex, times(1)).upsert(updated);
+    }
+
+    @Test
+    void updateScore_InvalidScore() {
+        StepVerifier.create(userService.updateScore("user1", 105))
+                .expectErrorMatches(e -> hasStatus(e, HttpStatus.BAD_REQUEST))
+                .verify();
+    }
+
+    @Test
+    void deleteUser_UserNotFound() {
+        when(userRepository.existsById("nonexistent")).thenReturn(Mono.just(false));
+
+        StepVerifier.create(userService.deleteUser("nonexistent"))
+                .expectErrorMatches(e -> hasStatus(e, HttpStatus.NOT_FOUND))
+                .verify();
+        verify(userRepository, never()).deleteById(anyString());
+    }
+
+    private static boolean hasStatus(Throwable e, HttpStatus status) {
+        return e instanceof ResponseStatusException && ((ResponseStatusException) e).getStatusCode() == status;
+    }
+}
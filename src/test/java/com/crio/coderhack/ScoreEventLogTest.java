@@ -0,0 +1,206 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.ScoreEvent;
+import com.crio.coderhack.entity.ScoreStatsMinute;
+import com.crio.coderhack.service.ScoreEventLog;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ScoreEventLogTest {
+
+    @Mock
+    private ObjectProvider<MongoTemplate> mongoTemplateProvider;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private ScoreEventLog scoreEventLog;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplateProvider.getIfAvailable()).thenReturn(mongoTemplate);
+        scoreEventLog = new ScoreEventLog(true, 1000, 100, mongoTemplateProvider, taskScheduler, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void flush_AppendsEventsWithoutTypeHintAndIncrementsMinuteAggregates() {
+        stubWrites();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreStatsMinute.class)).thenReturn(bulkOperations);
+        scoreEventLog.record("u1", 45, Badge.CODE_NINJA.bit(), Badge.CODE_NINJA.bit() | Badge.CODE_CHAMP.bit());
+        scoreEventLog.record("u2", 47, 0, Badge.CODE_NINJA.bit() | Badge.CODE_CHAMP.bit());
+        scoreEventLog.record("u1", 100, 7, 7);
+
+        scoreEventLog.flush();
+
+        ArgumentCaptor<List<Document>> documents = documentsCaptor();
+        verify(collection).insertMany(documents.capture(), any(InsertManyOptions.class));
+        assertEquals(3, documents.getValue().size());
+        Document first = documents.getValue().get(0);
+        assertEquals("u1", first.get("u"));
+        assertEquals(45, first.get("s"));
+        assertEquals(Badge.CODE_CHAMP.bit(), first.get("a"));
+        assertFalse(first.containsKey("_class"));
+
+        // All three events fall into the same minute, unless the test ran across a minute boundary.
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, atLeastOnce()).upsert(any(Query.class), updates.capture());
+        long submissions = 0;
+        long champAwards = 0;
+        long fortyToFortyNine = 0;
+        for (Update update : updates.getAllValues()) {
+            Document inc = (Document) update.getUpdateObject().get("$inc");
+            submissions += inc.get("submissions", 0L);
+            champAwards += inc.get("badgeAwards.CODE_CHAMP", 0L);
+            fortyToFortyNine += inc.get("scores.40-49", 0L);
+        }
+        assertEquals(3, submissions);
+        assertEquals(2, champAwards);
+        assertEquals(2, fortyToFortyNine);
+        assertEquals(0, scoreEventLog.backlog());
+    }
+
+    @Test
+    void flush_FailedInsert_KeepsEventsForNextFlush() {
+        stubWrites();
+        doThrow(new MongoException("unreachable")).when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        scoreEventLog.record("u1", 10, 0, Badge.CODE_NINJA.bit());
+
+        scoreEventLog.flush();
+
+        assertEquals(1, scoreEventLog.backlog());
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(ScoreStatsMinute.class));
+    }
+
+    @Test
+    void flush_PartiallyFailedInsert_RetriesOnlyFailedEvents() {
+        stubWrites();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreStatsMinute.class)).thenReturn(bulkOperations);
+        // The unordered insert wrote the first and third event and rejected the second.
+        MongoBulkWriteException partialFailure = new MongoBulkWriteException(mock(BulkWriteResult.class),
+                List.of(new BulkWriteError(2, "rejected", new BsonDocument(), 1)), null, new ServerAddress(), Set.of());
+        doThrow(partialFailure).doReturn(null).when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        scoreEventLog.record("u1", 10, 0, Badge.CODE_NINJA.bit());
+        scoreEventLog.record("u2", 20, 0, Badge.CODE_NINJA.bit());
+        scoreEventLog.record("u3", 30, 0, Badge.CODE_NINJA.bit());
+
+        scoreEventLog.flush();
+        assertEquals(1, scoreEventLog.backlog());
+        scoreEventLog.flush();
+
+        ArgumentCaptor<List<Document>> documents = documentsCaptor();
+        verify(collection, times(2)).insertMany(documents.capture(), any(InsertManyOptions.class));
+        // Only the rejected event is sent again.
+        assertEquals(List.of("u2"), documents.getAllValues().get(1).stream().map(document -> document.get("u")).toList());
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, atLeastOnce()).upsert(any(Query.class), updates.capture());
+        long submissions = 0;
+        for (Update update : updates.getAllValues()) {
+            submissions += ((Document) update.getUpdateObject().get("$inc")).get("submissions", 0L);
+        }
+        assertEquals(3, submissions);
+        assertEquals(0, scoreEventLog.backlog());
+    }
+
+    @Test
+    void record_FullQueue_DropsEvent() {
+        ScoreEventLog small = new ScoreEventLog(true, 1000, 1, mongoTemplateProvider, taskScheduler, new SimpleMeterRegistry());
+
+        small.record("u1", 10, 0, 1);
+        small.record("u2", 10, 0, 1);
+
+        assertEquals(1, small.backlog());
+    }
+
+    @Test
+    void scoreRange_LabelsTenPointRanges() {
+        assertEquals("0-9", ScoreEventLog.scoreRange(0));
+        assertEquals("40-49", ScoreEventLog.scoreRange(49));
+        assertEquals("90-99", ScoreEventLog.scoreRange(99));
+        assertEquals("100", ScoreEventLog.scoreRange(100));
+    }
+
+    private void stubWrites() {
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(ScoreEvent.class)).thenReturn("score_events");
+        when(mongoTemplate.getCollection("score_events")).thenReturn(collection);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Document>> documentsCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    @Test
+    void history_CursorWithId_ResumesInsideTheSameMillisecond() {
+        Instant before = Instant.parse("2026-01-01T00:00:00.123Z");
+        String beforeId = "65a000000000000000000002";
+
+        scoreEventLog.history("u1", before, beforeId, 2);
+        scoreEventLog.history("u1", before, null, 2);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(ScoreEvent.class));
+        Query resumed = queries.getAllValues().get(0);
+        // Events after the cursor's millisecond, plus those in it that sort after the cursor's ID.
+        assertEquals(new Document("userId", "u1").append("$or", List.of(
+                        new Document("time", new Document("$lt", before)),
+                        new Document("time", before).append("id", new Document("$lt", beforeId)))),
+                resumed.getQueryObject());
+        assertEquals(new Document("time", -1).append("id", -1), resumed.getSortObject());
+        assertEquals(2, resumed.getLimit());
+        assertEquals(new Document("userId", "u1").append("time", new Document("$lt", before)),
+                queries.getAllValues().get(1).getQueryObject());
+    }
+}
@@ -0,0 +1,108 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.repository.UserRepository;
+import com.crio.coderhack.service.ScoreWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ScoreWriteBufferTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @TempDir
+    Path journalDir;
+
+    private ScoreWriteBuffer buffer(String durability) {
+        return new ScoreWriteBuffer(true, 1000, durability, journalDir.toString(), false, userRepository, taskScheduler, new SimpleMeterRegistry());
+    }
+
+    // Records every change passed to the bulk write.
+    private List<ScoreChange> captureWrites() {
+        List<ScoreChange> written = new ArrayList<>();
+        when(userRepository.bulkUpdateScores(anyCollection())).thenAnswer(invocation -> {
+            Collection<ScoreChange> changes = invocation.getArgument(0);
+            written.addAll(changes);
+            return Collections.emptySet();
+        });
+        return written;
+    }
+
+    @Test
+    void flush_CoalescesUpdatesPerUser() {
+        List<ScoreChange> written = captureWrites();
+        ScoreWriteBuffer buffer = buffer("memory");
+
+        buffer.submit("user1", 70, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER));
+        buffer.submit("user1", 20, EnumSet.of(Badge.CODE_NINJA));
+        buffer.submit("user2", 5, EnumSet.of(Badge.CODE_NINJA));
+        // Reads that miss the cache see the pending score on top of the stored document.
+        User overlaid = buffer.overlay(new User("user1", "alice", 0, new HashSet<>()));
+        buffer.flush();
+
+        assertEquals(20, overlaid.getScore());
+        assertEquals(EnumSet.allOf(Badge.class), overlaid.getBadges());
+        assertEquals(2, written.size());
+        ScoreChange user1 = written.stream().filter(c -> c.getUserId().equals("user1")).findFirst().orElseThrow();
+        assertEquals(20, user1.getScore());
+        assertEquals(EnumSet.allOf(Badge.class), user1.getBadges());
+        assertEquals(0, buffer.backlog());
+    }
+
+    @Test
+    void flush_FailureKeepsChangesForRetry() {
+        when(userRepository.bulkUpdateScores(anyCollection())).thenThrow(new DataAccessResourceFailureException("down"));
+        ScoreWriteBuffer buffer = buffer("memory");
+
+        buffer.submit("user1", 40, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP));
+        buffer.flush();
+
+        assertEquals(1, buffer.backlog());
+    }
+
+    @Test
+    void journal_ReplaysUnflushedChangesOnRestart() {
+        ScoreWriteBuffer crashed = buffer("journal");
+        crashed.submit("user1", 70, EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER));
+        crashed.submit("user1", 20, EnumSet.of(Badge.CODE_NINJA));
+        crashed.submit("user2", 5, EnumSet.of(Badge.CODE_NINJA));
+        crashed.discard("user2");
+        // No flush and no shutdown: the process died with three acknowledged updates buffered.
+
+        List<ScoreChange> written = captureWrites();
+        ScoreWriteBuffer restarted = buffer("journal");
+
+        // The constructor replays the journal and flushes it before the rest of the application starts.
+        assertEquals(1, written.size());
+        assertEquals(new ScoreChange("user1", 20, EnumSet.allOf(Badge.class)), written.get(0));
+        assertEquals(0, restarted.backlog());
+        // Flushed segments are deleted, so a second restart has nothing to replay.
+        buffer("journal");
+        verify(userRepository, times(1)).bulkUpdateScores(anyCollection());
+    }
+}
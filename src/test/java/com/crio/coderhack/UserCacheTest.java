@@ -0,0 +1,63 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.UserCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserCacheTest {
+
+    private final UserCache userCache = new UserCache(100, Duration.ofMinutes(5), Duration.ofSeconds(2), new SimpleMeterRegistry());
+
+    @Test
+    void fill_StartedBeforeEvict_DoesNotBringUserBack() {
+        long token = userCache.fillToken("alice");
+        User read = new User("alice", "alice");
+        // deleteUser finishes while the read-through lookup is still on its way back.
+        userCache.evict("alice");
+
+        userCache.fill(read, token);
+
+        assertNull(userCache.get("alice"));
+    }
+
+    @Test
+    void fillMissing_StartedBeforeRegister_DoesNotHideUser() {
+        long token = userCache.fillToken("bob");
+        User registered = new User("bob", "bob");
+        userCache.put(registered);
+
+        userCache.fillMissing("bob", token);
+
+        assertFalse(userCache.isKnownMissing("bob"));
+        assertSame(registered, userCache.get("bob"));
+    }
+
+    @Test
+    void fill_WithoutConcurrentWrite_IsCached() {
+        User read = new User("carol", "carol");
+
+        userCache.fill(read, userCache.fillToken("carol"));
+        userCache.fillMissing("dave", userCache.fillToken("dave"));
+
+        assertSame(read, userCache.get("carol"));
+        assertTrue(userCache.isKnownMissing("dave"));
+    }
+
+    @Test
+    void put_OlderVersion_KeepsNewerCopy() {
+        User newer = new User("erin", "erin");
+        newer.setVersion(2);
+        User older = new User("erin", "erin");
+        older.setVersion(1);
+
+        userCache.put(newer);
+        userCache.put(older);
+
+        assertSame(newer, userCache.get("erin"));
+    }
+}
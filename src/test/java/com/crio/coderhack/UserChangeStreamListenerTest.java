@@ -0,0 +1,165 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.Badge;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
+import com.crio.coderhack.repository.LegacyBadgeMigration;
+import com.crio.coderhack.repository.UserRepository;
+import com.crio.coderhack.service.LeaderboardIndex;
+import com.crio.coderhack.service.ScoreWriteBuffer;
+import com.crio.coderhack.service.UserCache;
+import com.crio.coderhack.service.UserChangeStreamListener;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserChangeStreamListenerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ScoreWriteBuffer scoreWriteBuffer;
+
+    @Mock
+    private ObjectProvider<MongoTemplate> migrationTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private LeaderboardIndex leaderboardIndex;
+    private UserCache userCache;
+    private UserChangeStreamListener listener;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(User.class)).thenReturn("users");
+        lenient().when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        lenient().when(scoreWriteBuffer.overlay(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        leaderboardIndex = new LeaderboardIndex(userRepository);
+        leaderboardIndex.reload(Arrays.asList(user("alice", 50, Badge.CODE_NINJA), user("bob", 10, Badge.CODE_NINJA)));
+        userCache = new UserCache(100, Duration.ofMinutes(5), Duration.ofSeconds(2), new SimpleMeterRegistry());
+        listener = new UserChangeStreamListener(false, mongoTemplate, userRepository, leaderboardIndex, userCache,
+                scoreWriteBuffer, new LegacyBadgeMigration(migrationTemplate), eventPublisher, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void apply_RemoteUpdate_UpdatesIndexAndCacheAndPublishes() {
+        listener.apply(change(OperationType.UPDATE, document("bob", 70, Badge.CODE_NINJA.bit() | Badge.CODE_CHAMP.bit(), 1)));
+
+        User expected = user("bob", 70, Badge.CODE_NINJA, Badge.CODE_CHAMP);
+        expected.setVersion(1);
+        assertEquals(expected, leaderboardIndex.find("bob").orElseThrow());
+        assertEquals(List.of("alice", "bob"), ids(leaderboardIndex.ascending()));
+        assertEquals(expected, userCache.get("bob"));
+        verify(eventPublisher).publishEvent(UserChangeEvent.upserted(expected));
+    }
+
+    @Test
+    void apply_OlderLookupThanIndexedCopy_IsIgnored() {
+        // A lookup that is older than the copy already applied, e.g. by a local write in between.
+        listener.apply(change(OperationType.UPDATE, document("bob", 70, Badge.CODE_NINJA.bit(), 2)));
+        listener.apply(change(OperationType.UPDATE, document("bob", 40, Badge.CODE_NINJA.bit(), 1)));
+
+        assertEquals(70, leaderboardIndex.find("bob").orElseThrow().getScore());
+        assertEquals(70, userCache.get("bob").getScore());
+        verify(eventPublisher, times(1)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void apply_EchoOfLocalWrite_IsNotPublishedAgain() {
+        listener.apply(change(OperationType.UPDATE, document("alice", 50, Badge.CODE_NINJA.bit(), 0)));
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        assertNull(userCache.get("alice"));
+    }
+
+    @Test
+    void apply_RemoteInsertInLegacyFormat_IndexesBadgesFromArray() {
+        Document legacy = new Document("_id", "carol").append("username", "carol-name").append("score", 40)
+                .append("badges", Arrays.asList("CODE_NINJA", "CODE_CHAMP"));
+
+        listener.apply(change(OperationType.INSERT, legacy));
+
+        assertEquals(EnumSet.of(Badge.CODE_NINJA, Badge.CODE_CHAMP), leaderboardIndex.find("carol").orElseThrow().getBadges());
+        assertEquals(3, leaderboardIndex.size());
+    }
+
+    @Test
+    void apply_PendingWriteBehindScore_WinsOverStoredDocument() {
+        User pending = user("bob", 90, Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER);
+        pending.setVersion(1);
+        when(scoreWriteBuffer.overlay(any(User.class))).thenReturn(pending);
+
+        listener.apply(change(OperationType.UPDATE, document("bob", 30, Badge.CODE_NINJA.bit() | Badge.CODE_CHAMP.bit(), 1)));
+
+        assertEquals(pending, leaderboardIndex.find("bob").orElseThrow());
+    }
+
+    @Test
+    void apply_RemoteDelete_RemovesUserEverywhere() {
+        userCache.put(user("bob", 10, Badge.CODE_NINJA));
+        ChangeStreamDocument<Document> delete = change(OperationType.DELETE, null);
+        when(delete.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString("bob")));
+
+        listener.apply(delete);
+        listener.apply(delete);
+
+        assertTrue(leaderboardIndex.find("bob").isEmpty());
+        assertNull(userCache.get("bob"));
+        verify(scoreWriteBuffer, times(2)).discard("bob");
+        verify(eventPublisher, times(1)).publishEvent(UserChangeEvent.deleted("bob"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamDocument<Document> change(OperationType type, Document fullDocument) {
+        ChangeStreamDocument<Document> change = mock(ChangeStreamDocument.class);
+        when(change.getOperationType()).thenReturn(type);
+        if (fullDocument != null) {
+            when(change.getFullDocument()).thenReturn(fullDocument);
+        }
+        return change;
+    }
+
+    private static Document document(String userId, int score, int badgeMask, long version) {
+        return new Document("_id", userId).append("username", userId + "-name").append("score", score)
+                .append("badgeMask", badgeMask).append("version", version);
+    }
+
+    private static User user(String userId, int score, Badge... badges) {
+        return new User(userId, userId + "-name", score, new HashSet<>(Arrays.asList(badges)));
+    }
+
+    private static List<String> ids(List<User> users) {
+        return users.stream().map(User::getUserId).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.controller.UserController;
+import com.crio.coderhack.dto.LeaderboardRow;
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.service.LeaderboardSnapshot;
+import com.crio.coderhack.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserControllerTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private LeaderboardSnapshot leaderboardSnapshot;
+
+    @Test
+    void exportAllUsers_WritesOneJsonArrayAndClosesTheCursor() throws Exception {
+        UserController controller = new UserController(userService, new ObjectMapper(), leaderboardSnapshot);
+        AtomicBoolean closed = new AtomicBoolean();
+        // The same kind of projection proxy Spring Data returns for the repository's row query.
+        SpelAwareProxyProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+        User bob = new User("u2", "bob", 40, UserService.badgesForScore(40));
+        bob.setVersion(7);
+        when(userService.streamLeaderboardRows()).thenReturn(Stream.of(
+                        projections.createProjection(LeaderboardRow.class, new User("u1", "alice", 10, new HashSet<>())),
+                        projections.createProjection(LeaderboardRow.class, bob))
+                .onClose(() -> closed.set(true)));
+
+        ResponseEntity<StreamingResponseBody> response = controller.exportAllUsers();
+        // Nothing is read from the database until the body is written.
+        verify(userService, never()).streamLeaderboardRows();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertEquals("[{\"userId\":\"u1\",\"username\":\"alice\",\"score\":10,\"badges\":[]},"
+                        + "{\"userId\":\"u2\",\"username\":\"bob\",\"score\":40,\"badges\":[\"CODE_NINJA\",\"CODE_CHAMP\"]}]",
+                out.toString(StandardCharsets.UTF_8));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportAllUsers_NoUsers_WritesEmptyArray() throws Exception {
+        UserController controller = new UserController(userService, new ObjectMapper(), leaderboardSnapshot);
+        when(userService.streamLeaderboardRows()).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        controller.exportAllUsers().getBody().writeTo(out);
+
+        assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void getLeaderboardPage_IncompleteOrMixedCursor_Returns400() {
+        UserController controller = new UserController(userService, new ObjectMapper(), leaderboardSnapshot);
+
+        for (Runnable request : new Runnable[] {
+                () -> controller.getLeaderboardPage(10, null, 50, null),
+                () -> controller.getLeaderboardPage(10, null, null, "u5"),
+                () -> controller.getLeaderboardPage(10, 2, 50, "u5")}) {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class, request::run);
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        }
+        verifyNoInteractions(userService);
+    }
+}
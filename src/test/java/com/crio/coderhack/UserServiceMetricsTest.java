@@ -0,0 +1,69 @@
+package com.crio.coderhack;
+
+import com.crio.coderhack.entity.User;
+import com.crio.coderhack.metrics.UserServiceMetrics;
+import com.crio.coderhack.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// The aspect must tag each UserService call with its outcome and pass results and exceptions through unchanged.
+@ExtendWith(MockitoExtension.class)
+public class UserServiceMetricsTest {
+
+    @Mock
+    private UserService target;
+
+    private SimpleMeterRegistry registry;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new UserServiceMetrics(registry));
+        userService = factory.getProxy();
+    }
+
+    @Test
+    void recordsOutcomePerOperation() {
+        when(target.getUserById("user1")).thenReturn(Optional.of(new User("user1", "alice")));
+        when(target.getUserById("ghost")).thenReturn(Optional.empty());
+        when(target.registerUser("user1", "alice")).thenThrow(new ResponseStatusException(HttpStatus.CONFLICT));
+
+        assertTrue(userService.getUserById("user1").isPresent());
+        assertTrue(userService.getUserById("ghost").isEmpty());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.registerUser("user1", "alice"));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals(1, count("getUserById", "ok"));
+        assertEquals(1, count("getUserById", "404"));
+        assertEquals(1, count("registerUser", "409"));
+    }
+
+    @Test
+    void recordsLeaderboardResultSize() {
+        when(target.getAllUsers()).thenReturn(Arrays.asList(new User("user1", "alice"), new User("user2", "bob")));
+
+        assertEquals(2, userService.getAllUsers().size());
+
+        assertEquals(2.0, registry.get("coderhack.leaderboard.result.size").tag("operation", "getAllUsers").summary().totalAmount());
+    }
+
+    private long count(String operation, String outcome) {
+        return registry.get("coderhack.user.operation").tag("operation", operation).tag("outcome", outcome).timer().count();
+    }
+}
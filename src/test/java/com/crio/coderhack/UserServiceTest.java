@@ -1,28 +1,57 @@
 package com.crio.coderhack;
 
+import com.crio.coderhack.dto.LeaderboardPage;
+import com.crio.coderhack.dto.RegistrationResult;
+import com.crio.coderhack.dto.ScoreChange;
+import com.crio.coderhack.dto.ScorePercentile;
+import com.crio.coderhack.dto.ScoreUpdate;
+import com.crio.coderhack.dto.ScoreUpdateResult;
+import com.crio.coderhack.dto.UserRank;
 import com.crio.coderhack.entity.Badge;
 import com.crio.coderhack.entity.User;
+import com.crio.coderhack.event.UserChangeEvent;
 import com.crio.coderhack.repository.UserRepository;
+import com.crio.coderhack.service.LeaderboardIndex;
+import com.crio.coderhack.service.ScoreEventLog;
+import com.crio.coderhack.service.ScoreWriteBuffer;
+import com.crio.coderhack.service.UserCache;
 import com.crio.coderhack.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 // @ExtendWith(MockitoExtension.class) integrates Mockito with JUnit 5.
@@ -33,10 +62,32 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    // @Mock for the in-memory leaderboard index; unloaded by default, so reads fall back to the repository.
+    @Mock
+    private LeaderboardIndex leaderboardIndex;
+
+    // @Mock for the user cache; every lookup misses by default, so reads reach the repository.
+    @Mock
+    private UserCache userCache;
+
+    // @Mock for the change event publisher that feeds the live leaderboard stream.
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    // @Mock for the write-behind buffer; disabled by default, so score updates are written synchronously.
+    @Mock
+    private ScoreWriteBuffer scoreWriteBuffer;
+
+    // @Mock for the score history; records nothing.
+    @Mock
+    private ScoreEventLog scoreEventLog;
+
     // @InjectMocks injects the mock UserRepository into UserService.
     @InjectMocks
     private UserService userService;
 
+    private static final Sort LEADERBOARD_SORT = Sort.by(Sort.Order.asc("score"), Sort.Order.asc("userId"));
+
     private User testUser;
 
     @BeforeEach
@@ -47,12 +98,19 @@ public class UserServiceTest {
         testUser.setBadges(new HashSet<>());
     }
 
+    // Simulates the repository's findAndModify: $set the score and $bit or the badges into testUser.
+    private void stubAtomicUpdate() {
+        when(userRepository.updateScoreAndAddBadges(eq("user1"), anyInt(), anySet())).thenAnswer(invocation -> {
+            testUser.setScore(invocation.getArgument(1));
+            testUser.addBadges(invocation.getArgument(2));
+            return Optional.of(testUser);
+        });
+    }
+
     @Test
     void registerUser_Success() {
-        // Mock repository behavior: when existsById is called, return false (user does not exist).
-        when(userRepository.existsById("user1")).thenReturn(false);
-        // Mock repository behavior: when save is called, return the user object that was passed to it.
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        // Mock repository behavior: when insert is called, return the user object that was passed to it.
+        when(userRepository.insert(any(User.class))).thenReturn(testUser);
 
         User registeredUser = userService.registerUser("user1", "testuser");
 
@@ -62,15 +120,16 @@ public class UserServiceTest {
         assertEquals("testuser", registeredUser.getUsername());
         assertEquals(0, registeredUser.getScore());
         assertTrue(registeredUser.getBadges().isEmpty());
-        // Verify that existsById was called once and save method was called exactly once.
-        verify(userRepository, times(1)).existsById("user1");
-        verify(userRepository, times(1)).save(any(User.class));
+        // Verify a single insert was issued, with no separate existence check.
+        verify(userRepository, times(1)).insert(any(User.class));
+        verify(userRepository, never()).existsById(anyString());
+        verify(leaderboardIndex, times(1)).upsert(testUser);
     }
 
     @Test
     void registerUser_UserAlreadyExists() {
-        // Mock repository behavior: user exists.
-        when(userRepository.existsById("user1")).thenReturn(true);
+        // Mock repository behavior: the insert hits the unique _id index.
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
 
         // Assert that calling registerUser throws a ResponseStatusException with CONFLICT status.
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
@@ -79,8 +138,28 @@ public class UserServiceTest {
 
         assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
         assertEquals("User with ID user1 already exists.", exception.getReason());
-        // Verify that save method was never called.
-        verify(userRepository, never()).save(any(User.class));
+        // Verify that the index was not touched.
+        verify(leaderboardIndex, never()).upsert(any(User.class));
+    }
+
+    @Test
+    void registerUsers_ReportsInvalidAndDuplicateItems() {
+        // The second "user1" is rejected by the unique _id index, as is the already registered "user2".
+        when(userRepository.insertNewUsers(anyList())).thenReturn(new HashSet<>(Arrays.asList(2, 3)));
+
+        List<RegistrationResult> results = userService.registerUsers(Arrays.asList(
+                new User("user1", "alice"),
+                new User("user3", "carol"),
+                new User("", "nobody"),
+                new User("user1", "alice again"),
+                new User("user2", "bob")).iterator());
+
+        assertEquals(Arrays.asList(200, 200, 400, 409, 409),
+                results.stream().map(RegistrationResult::getStatus).collect(Collectors.toList()));
+        assertEquals("User with ID user2 already exists.", results.get(4).getError());
+        verify(userRepository, times(1)).insertNewUsers(anyList());
+        verify(userRepository, never()).existsById(anyString());
+        verify(leaderboardIndex, times(2)).upsert(any(User.class));
     }
 
     @Test
@@ -93,6 +172,8 @@ public class UserServiceTest {
         // Assertions.
         assertTrue(foundUser.isPresent());
         assertEquals(testUser, foundUser.get());
+        // The user read from the database fills the cache.
+        verify(userCache, times(1)).fill(eq(testUser), anyLong());
     }
 
     @Test
@@ -104,14 +185,35 @@ public class UserServiceTest {
 
         // Assertions.
         assertFalse(foundUser.isPresent());
+        // The miss is remembered so repeated lookups do not reach the database.
+        verify(userCache, times(1)).fillMissing(eq("nonexistent"), anyLong());
+    }
+
+    @Test
+    void getUserById_ServedFromCache() {
+        when(userCache.get("user1")).thenReturn(testUser);
+
+        Optional<User> foundUser = userService.getUserById("user1");
+
+        assertEquals(Optional.of(testUser), foundUser);
+        verify(userRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void getUserById_KnownMissingSkipsDatabase() {
+        when(userCache.isKnownMissing("nonexistent")).thenReturn(true);
+
+        Optional<User> foundUser = userService.getUserById("nonexistent");
+
+        assertFalse(foundUser.isPresent());
+        verify(userRepository, never()).findById(anyString());
     }
 
     @Test
     void updateScore_ValidScoreAndBadgesAwarded() {
         // Set initial score to ensure it's updated
         testUser.setScore(0);
-        when(userRepository.findById("user1")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        stubAtomicUpdate();
 
         User updatedUser = userService.updateScore("user1", 75); // Score for Code Master
 
@@ -120,14 +222,18 @@ public class UserServiceTest {
         // Check if all three badges are awarded correctly based on score 75
         Set<Badge> expectedBadges = new HashSet<>(Arrays.asList(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER));
         assertEquals(expectedBadges, updatedUser.getBadges());
-        verify(userRepository, times(1)).save(testUser); // Verify save was called with the updated user
+        // Verify a single atomic update was issued with the badges for score 75, and no read-modify-write.
+        verify(userRepository, times(1)).updateScoreAndAddBadges("user1", 75, expectedBadges);
+        verify(userRepository, never()).findById(anyString());
+        verify(userRepository, never()).save(any(User.class));
+        verify(leaderboardIndex, times(1)).upsert(testUser); // The index sees the new score
+        verify(userCache, times(1)).put(testUser); // The cache is written through
     }
 
     @Test
     void updateScore_ValidScore_CodeNinjaBadge() {
         testUser.setScore(0);
-        when(userRepository.findById("user1")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        stubAtomicUpdate();
 
         User updatedUser = userService.updateScore("user1", 15); // Score for Code Ninja
 
@@ -140,8 +246,7 @@ public class UserServiceTest {
     @Test
     void updateScore_ValidScore_CodeChampBadge() {
         testUser.setScore(0);
-        when(userRepository.findById("user1")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        stubAtomicUpdate();
 
         User updatedUser = userService.updateScore("user1", 45); // Score for Code Champ
 
@@ -158,8 +263,7 @@ public class UserServiceTest {
         Set<Badge> initialBadges = new HashSet<>(Arrays.asList(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER));
         testUser.setBadges(initialBadges);
 
-        when(userRepository.findById("user1")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        stubAtomicUpdate();
 
         User updatedUser = userService.updateScore("user1", 20); // Score drops to 20
 
@@ -170,6 +274,19 @@ public class UserServiceTest {
     }
 
 
+    @Test
+    void updateScore_RecordsScoreEventWithPreviousBadges() {
+        User indexed = new User("user1", "testuser", 20, new HashSet<>(Collections.singletonList(Badge.CODE_NINJA)));
+        when(leaderboardIndex.find("user1")).thenReturn(Optional.of(indexed));
+        testUser.setBadges(indexed.getBadges());
+        stubAtomicUpdate();
+
+        userService.updateScore("user1", 45);
+
+        verify(scoreEventLog, times(1)).record("user1", 45, Badge.CODE_NINJA.bit(),
+                Badge.CODE_NINJA.bit() | Badge.CODE_CHAMP.bit());
+    }
+
     @Test
     void updateScore_InvalidScore_TooLow() {
         // Assert that calling updateScore with invalid score throws exception.
@@ -178,7 +295,7 @@ public class UserServiceTest {
         });
         assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
         assertEquals("Score must be between 0 and 100.", exception.getReason());
-        verify(userRepository, never()).findById(anyString()); // Verify no repository interaction
+        verify(userRepository, never()).updateScoreAndAddBadges(anyString(), anyInt(), anySet()); // Verify no repository interaction
     }
 
     @Test
@@ -188,19 +305,115 @@ public class UserServiceTest {
         });
         assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
         assertEquals("Score must be between 0 and 100.", exception.getReason());
-        verify(userRepository, never()).findById(anyString());
+        verify(userRepository, never()).updateScoreAndAddBadges(anyString(), anyInt(), anySet());
     }
 
     @Test
     void updateScore_UserNotFound() {
-        when(userRepository.findById("nonexistent")).thenReturn(Optional.empty());
+        when(userRepository.updateScoreAndAddBadges(eq("nonexistent"), eq(50), anySet())).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
             userService.updateScore("nonexistent", 50);
         });
         assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
         assertEquals("User with ID nonexistent not found.", exception.getReason());
-        verify(userRepository, never()).save(any(User.class)); // Verify save was not called
+        verify(leaderboardIndex, never()).upsert(any(User.class)); // Verify the index was not touched
+    }
+
+    @Test
+    void updateScore_WriteBehind_AcknowledgedFromIndex() {
+        when(scoreWriteBuffer.isEnabled()).thenReturn(true);
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        User indexed = new User("user1", "testuser", 65, new HashSet<>(Arrays.asList(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER)));
+        when(leaderboardIndex.applyScore(eq("user1"), eq(65), anySet())).thenReturn(Optional.of(indexed));
+
+        User updatedUser = userService.updateScore("user1", 65);
+
+        assertSame(indexed, updatedUser);
+        // The change is buffered instead of written; MongoDB sees it on the next flush.
+        verify(scoreWriteBuffer, times(1)).submit(eq("user1"), eq(65), eq(UserService.badgesForScore(65)));
+        verify(userRepository, never()).updateScoreAndAddBadges(anyString(), anyInt(), anySet());
+        verify(userCache, times(1)).put(indexed);
+    }
+
+    @Test
+    void updateScore_WriteBehind_SameUserUpdatesDoNotInterleave() throws Exception {
+        when(scoreWriteBuffer.isEnabled()).thenReturn(true);
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.applyScore(eq("user1"), anyInt(), anySet()))
+                .thenAnswer(invocation -> Optional.of(new User("user1", "testuser", invocation.getArgument(1), invocation.getArgument(2))));
+        CountDownLatch submitting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            submitting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(scoreWriteBuffer).submit(eq("user1"), eq(10), anySet());
+
+        CompletableFuture<User> first = CompletableFuture.supplyAsync(() -> userService.updateScore("user1", 10));
+        assertTrue(submitting.await(5, TimeUnit.SECONDS));
+        CompletableFuture<User> second = CompletableFuture.supplyAsync(() -> userService.updateScore("user1", 20));
+        Thread.sleep(100);
+        // The second update waits for the first to reach the buffer before touching the index.
+        verify(leaderboardIndex, never()).applyScore(eq("user1"), eq(20), anySet());
+        release.countDown();
+
+        assertEquals(10, first.get(5, TimeUnit.SECONDS).getScore());
+        assertEquals(20, second.get(5, TimeUnit.SECONDS).getScore());
+        InOrder inOrder = inOrder(leaderboardIndex, scoreWriteBuffer);
+        inOrder.verify(leaderboardIndex).applyScore(eq("user1"), eq(10), anySet());
+        inOrder.verify(scoreWriteBuffer).submit(eq("user1"), eq(10), anySet());
+        inOrder.verify(leaderboardIndex).applyScore(eq("user1"), eq(20), anySet());
+        inOrder.verify(scoreWriteBuffer).submit(eq("user1"), eq(20), anySet());
+    }
+
+    @Test
+    void updateScore_WriteBehind_UserNotFound() {
+        when(scoreWriteBuffer.isEnabled()).thenReturn(true);
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.applyScore(eq("nonexistent"), eq(50), anySet())).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.updateScore("nonexistent", 50));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        verify(scoreWriteBuffer, never()).submit(anyString(), anyInt(), anySet());
+    }
+
+    @Test
+    void updateScores_ValidatesMergesAndReportsMissingUsers() {
+        List<ScoreChange> written = new ArrayList<>();
+        when(userRepository.bulkUpdateScores(anyCollection())).thenAnswer(invocation -> {
+            Collection<ScoreChange> changes = invocation.getArgument(0);
+            written.addAll(changes);
+            return Collections.singleton("ghost");
+        });
+        User storedUser1 = new User("user1", "alice", 20, new HashSet<>(Arrays.asList(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER)));
+        storedUser1.setVersion(3);
+        when(userRepository.findAllById(List.of("user1"))).thenReturn(List.of(storedUser1));
+
+        List<ScoreUpdateResult> results = userService.updateScores(Arrays.asList(
+                new ScoreUpdate("user1", 70),
+                new ScoreUpdate("user2", 101),
+                new ScoreUpdate("ghost", 10),
+                new ScoreUpdate("user1", 20),
+                new ScoreUpdate(null, 5)).iterator());
+
+        // One result per item, in request order.
+        assertEquals(Arrays.asList(200, 400, 404, 200, 400),
+                results.stream().map(ScoreUpdateResult::getStatus).collect(Collectors.toList()));
+        assertEquals("Score must be between 0 and 100.", results.get(1).getError());
+        // Both user1 items were merged into one write: last score wins, badges from both are kept.
+        assertEquals(2, written.size());
+        ScoreChange user1 = written.get(0);
+        assertEquals(20, user1.getScore());
+        assertEquals(new HashSet<>(Arrays.asList(Badge.CODE_NINJA, Badge.CODE_CHAMP, Badge.CODE_MASTER)), user1.getBadges());
+        verify(userRepository, times(1)).bulkUpdateScores(anyCollection());
+        // The stored copies, with their versions, go through the version-gated index and cache.
+        verify(leaderboardIndex, times(1)).upsert(storedUser1);
+        verify(leaderboardIndex, never()).applyScore(anyString(), anyInt(), anySet());
+        verify(userCache).put(storedUser1);
+        // Only the merged user1 change is published to live leaderboard subscribers.
+        verify(eventPublisher, times(1)).publishEvent(any(UserChangeEvent.class));
     }
 
     @Test
@@ -214,6 +427,9 @@ public class UserServiceTest {
         // Verify that existsById was called once and deleteById was called exactly once.
         verify(userRepository, times(1)).existsById("user1");
         verify(userRepository, times(1)).deleteById("user1");
+        verify(leaderboardIndex, times(1)).remove("user1");
+        verify(userCache, times(1)).evict("user1");
+        verify(eventPublisher, times(1)).publishEvent(UserChangeEvent.deleted("user1"));
     }
 
     @Test
@@ -260,4 +476,154 @@ public class UserServiceTest {
         assertNotNull(retrievedUsers);
         assertTrue(retrievedUsers.isEmpty());
     }
+
+    @Test
+    void getAllUsers_ServedFromIndexWhenLoaded() {
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.ascending()).thenReturn(Collections.singletonList(testUser));
+
+        List<User> retrievedUsers = userService.getAllUsers();
+
+        assertEquals(Collections.singletonList(testUser), retrievedUsers);
+        // The database sort must not run once the index is available.
+        verify(userRepository, never()).findAllByOrderByScoreAsc();
+    }
+
+    @Test
+    void getRank_FromRepositoryWhenIndexNotLoaded() {
+        testUser.setScore(40);
+        when(userRepository.findById("user1")).thenReturn(Optional.of(testUser));
+        when(userRepository.countByScoreGreaterThan(40)).thenReturn(2L);
+        when(userRepository.count()).thenReturn(5L);
+
+        UserRank rank = userService.getRank("user1");
+
+        assertEquals(40, rank.getScore());
+        assertEquals(3, rank.getRank());
+        assertEquals(5, rank.getTotalUsers());
+    }
+
+    @Test
+    void getPercentile_FromRepositoryWhenIndexNotLoaded() {
+        when(userRepository.countByScoreGreaterThan(40)).thenReturn(1L);
+        when(userRepository.count()).thenReturn(4L);
+
+        assertEquals(new ScorePercentile(40, 2, 3, 4, 75.0), userService.getPercentile(40));
+        assertThrows(ResponseStatusException.class, () -> userService.getPercentile(101));
+    }
+
+    @Test
+    void getRank_UserNotFound() {
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.rank("nonexistent")).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            userService.getRank("nonexistent");
+        });
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+
+    @Test
+    void updateScores_StaleBulkResult_DoesNotOverwriteNewerIndexedScore() {
+        User newer = new User("user1", "alice", 90, new HashSet<>());
+        newer.setVersion(5);
+        LeaderboardIndex index = new LeaderboardIndex(userRepository);
+        index.reload(List.of(newer));
+        UserService service = new UserService(userRepository, index, userCache, eventPublisher, scoreWriteBuffer, scoreEventLog);
+        when(userRepository.bulkUpdateScores(anyCollection())).thenReturn(Collections.emptySet());
+        // A single update (version 5) reached the index before this batch's read-back, which still sees version 4.
+        User stale = new User("user1", "alice", 10, new HashSet<>());
+        stale.setVersion(4);
+        when(userRepository.findAllById(List.of("user1"))).thenReturn(List.of(stale));
+
+        service.updateScores(List.of(new ScoreUpdate("user1", 10)).iterator());
+
+        assertEquals(90, index.find("user1").orElseThrow().getScore());
+    }
+
+    @Test
+    void getLeaderboardPage_FromIndex_FetchesOneExtraToDetectNextPage() {
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.range(4, 3)).thenReturn(Arrays.asList(
+                new User("u5", "e", 50, new HashSet<>()), new User("u6", "f", 60, new HashSet<>()), new User("u7", "g", 70, new HashSet<>())));
+
+        LeaderboardPage page = userService.getLeaderboardPage(2, 2);
+
+        assertEquals(Arrays.asList("u5", "u6"), page.getUsers().stream().map(User::getUserId).collect(Collectors.toList()));
+        assertTrue(page.isHasNext());
+        assertEquals(2, page.getPage());
+        assertEquals(60, page.getNextAfterScore());
+        assertEquals("u6", page.getNextAfterUserId());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getLeaderboardPage_PastTheEnd_IsEmptyWithoutCursor() {
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.range(1000, 11)).thenReturn(Collections.emptyList());
+
+        LeaderboardPage page = userService.getLeaderboardPage(100, 10);
+
+        assertTrue(page.getUsers().isEmpty());
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextAfterScore());
+        assertNull(page.getNextAfterUserId());
+    }
+
+    @Test
+    void getLeaderboardPage_IndexNotLoaded_UsesRepositorySlice() {
+        PageRequest request = PageRequest.of(1, 2, LEADERBOARD_SORT);
+        List<User> content = Arrays.asList(new User("u3", "c", 30, new HashSet<>()), new User("u4", "d", 40, new HashSet<>()));
+        when(userRepository.findAllBy(request)).thenReturn(new SliceImpl<>(content, request, false));
+
+        LeaderboardPage page = userService.getLeaderboardPage(1, 2);
+
+        assertEquals(content, page.getUsers());
+        assertFalse(page.isHasNext());
+        assertEquals(40, page.getNextAfterScore());
+        assertEquals("u4", page.getNextAfterUserId());
+    }
+
+    @Test
+    void getLeaderboardAfter_FromIndex_ResumesAfterCursor() {
+        when(leaderboardIndex.isLoaded()).thenReturn(true);
+        when(leaderboardIndex.rangeAfter(50, "u5", 3)).thenReturn(List.of(new User("u6", "f", 50, new HashSet<>())));
+
+        LeaderboardPage page = userService.getLeaderboardAfter(50, "u5", 2);
+
+        assertEquals(1, page.getUsers().size());
+        assertFalse(page.isHasNext());
+        // Cursor pages carry no page number.
+        assertNull(page.getPage());
+        assertEquals("u6", page.getNextAfterUserId());
+    }
+
+    @Test
+    void getLeaderboardAfter_IndexNotLoaded_UsesRepositoryKeysetQuery() {
+        PageRequest request = PageRequest.of(0, 1, LEADERBOARD_SORT);
+        User next = new User("u6", "f", 50, new HashSet<>());
+        when(userRepository.findAllAfter(50, "u5", request)).thenReturn(new SliceImpl<>(List.of(next), request, true));
+
+        LeaderboardPage page = userService.getLeaderboardAfter(50, "u5", 1);
+
+        assertEquals(List.of(next), page.getUsers());
+        assertTrue(page.isHasNext());
+        assertEquals(50, page.getNextAfterScore());
+    }
+
+    @Test
+    void getLeaderboardPage_OutOfRangePageOrLimit_Returns400() {
+        for (int[] pageAndLimit : new int[][] {{-1, 10}, {0, 0}, {0, -5}, {0, UserService.MAX_PAGE_SIZE + 1}}) {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                    () -> userService.getLeaderboardPage(pageAndLimit[0], pageAndLimit[1]));
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        }
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> userService.getLeaderboardAfter(50, "u5", UserService.MAX_PAGE_SIZE + 1));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        verifyNoInteractions(userRepository);
+        // The largest allowed page size is accepted.
+        when(userRepository.findAllBy(any())).thenReturn(new SliceImpl<>(Collections.emptyList()));
+        assertDoesNotThrow(() -> userService.getLeaderboardPage(0, UserService.MAX_PAGE_SIZE));
+    }
 }